@@ -0,0 +1,106 @@
+package com.bankoperations.bankoperations.benchmark;
+
+import com.bankoperations.bankoperations.EmbeddedBank;
+import com.bankoperations.bankoperations.dto.BatchTransferResponse;
+import com.bankoperations.bankoperations.dto.TransferRequest;
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rows inserted per second by bulk onboarding (a user and its bank account per row, through the
+ * entity manager) and by batch transfers, {@link #ROWS} rows per transaction.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class InsertBenchmark {
+
+    private static final int ROWS = 500;
+
+    private static final int ACCOUNTS = 1_000;
+
+    private final AtomicLong usernames = new AtomicLong();
+
+    private ConfigurableApplicationContext context;
+
+    private UserRepository userRepository;
+
+    private BankAccountRepository bankAccountRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private TransferService transferService;
+
+    private List<Long> userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = EmbeddedBank.start();
+        userIds = EmbeddedBank.seedUsers(context, ACCOUNTS, Money.of("1000000000.00"));
+        userRepository = context.getBean(UserRepository.class);
+        bankAccountRepository = context.getBean(BankAccountRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        transferService = context.getBean(TransferService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void onboardUsers() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < ROWS; i++) {
+                User user = userRepository.save(EmbeddedBank.newUser("onboarded" + usernames.incrementAndGet()));
+                BankAccount bankAccount = new BankAccount();
+                bankAccount.setUser(user);
+                bankAccount.setBalance(user.getInitialDeposit());
+                bankAccountRepository.save(bankAccount);
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public BatchTransferResponse transferBatch() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<TransferRequest> requests = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            int sender = random.nextInt(ACCOUNTS);
+            int recipient = (sender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            requests.add(new TransferRequest(userIds.get(sender), userIds.get(recipient), Money.of("1.00")));
+        }
+        return transferService.transferBatch(requests);
+    }
+}
@@ -0,0 +1,96 @@
+package com.bankoperations.bankoperations.benchmark;
+
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.service.InterestAccrualEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-account interest arithmetic: the original loop body, which parsed the rate and the cap
+ * multiplier for every account, against the shared constants of {@link InterestAccrualEngine}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InterestMathBenchmark {
+
+    private static final int ACCOUNTS = 1024;
+
+    private BigDecimal[] balances;
+
+    private BigDecimal[] initialDeposits;
+
+    private Money[] moneyBalances;
+
+    private Money[] moneyInitialDeposits;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        balances = new BigDecimal[ACCOUNTS];
+        initialDeposits = new BigDecimal[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            initialDeposits[i] = BigDecimal.valueOf(100 + random.nextInt(100_000), 2);
+            balances[i] = initialDeposits[i].multiply(BigDecimal.valueOf(1 + random.nextInt(250), 2));
+        }
+        moneyBalances = new Money[ACCOUNTS];
+        moneyInitialDeposits = new Money[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            moneyBalances[i] = Money.of(balances[i], RoundingMode.HALF_UP);
+            moneyInitialDeposits[i] = Money.of(initialDeposits[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCOUNTS)
+    public void parsedPerAccount(Blackhole blackhole) {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            BigDecimal interestRate = new BigDecimal("1.05");
+            BigDecimal newBalance = balances[i].multiply(interestRate);
+            BigDecimal maxBalance = initialDeposits[i].multiply(new BigDecimal("2.07"));
+            if (newBalance.compareTo(maxBalance) > 0) {
+                newBalance = maxBalance;
+            }
+            blackhole.consume(newBalance);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCOUNTS)
+    public void sharedConstants(Blackhole blackhole) {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            BigDecimal newBalance = balances[i].multiply(InterestAccrualEngine.INTEREST_RATE);
+            BigDecimal maxBalance = initialDeposits[i].multiply(InterestAccrualEngine.MAX_BALANCE_MULTIPLIER);
+            blackhole.consume(newBalance.min(maxBalance));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ACCOUNTS)
+    public void moneyRounded(Blackhole blackhole) {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            Money newBalance = moneyBalances[i].multiply(InterestAccrualEngine.INTEREST_RATE, RoundingMode.HALF_UP);
+            Money maxBalance = moneyInitialDeposits[i].multiply(InterestAccrualEngine.MAX_BALANCE_MULTIPLIER,
+                    RoundingMode.HALF_UP);
+            blackhole.consume(newBalance.isLessThan(maxBalance) ? newBalance : maxBalance);
+        }
+    }
+}
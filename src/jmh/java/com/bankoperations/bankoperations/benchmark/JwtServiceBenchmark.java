@@ -0,0 +1,84 @@
+package com.bankoperations.bankoperations.benchmark;
+
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.service.BankMetrics;
+import com.bankoperations.bankoperations.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token issuing and the claim extraction path of every authenticated request, with the
+ * verified claims cache (cache hit) and without it (signature verified on every call).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtServiceBenchmark {
+
+    private static final int TOKENS = 1024;
+
+    private JwtService cachingJwtService;
+
+    private JwtService uncachedJwtService;
+
+    private User user;
+
+    private String[] tokens;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        cachingJwtService = new JwtService(TOKENS, new BankMetrics(new SimpleMeterRegistry()));
+        uncachedJwtService = new JwtService(0, new BankMetrics(new SimpleMeterRegistry()));
+
+        user = new User();
+        user.setId(42L);
+        user.setUsername("benchmark");
+        user.setEmail("benchmark@example.com");
+
+        tokens = new String[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            User tokenUser = new User();
+            tokenUser.setId((long) i);
+            tokenUser.setUsername("user" + i);
+            tokenUser.setEmail("user" + i + "@example.com");
+            tokens[i] = cachingJwtService.generateToken(tokenUser);
+        }
+    }
+
+    @Benchmark
+    public String generateToken() {
+        return cachingJwtService.generateToken(user);
+    }
+
+    @Benchmark
+    public Claims parseClaimsCached() {
+        return cachingJwtService.parseClaims(nextToken());
+    }
+
+    @Benchmark
+    public Claims parseClaimsUncached() {
+        return uncachedJwtService.parseClaims(nextToken());
+    }
+
+    private String nextToken() {
+        next = (next + 1) & (TOKENS - 1);
+        return tokens[next];
+    }
+}
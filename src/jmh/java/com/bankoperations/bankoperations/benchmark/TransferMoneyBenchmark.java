@@ -0,0 +1,73 @@
+package com.bankoperations.bankoperations.benchmark;
+
+import com.bankoperations.bankoperations.EmbeddedBank;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.Transfer;
+import com.bankoperations.bankoperations.service.TransferService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end transfers between random pairs of accounts on an embedded database: row locks,
+ * balance updates and the transfer insert, each in its own transaction, in the locking and the
+ * conditional transfer mode.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+@Threads(4)
+public class TransferMoneyBenchmark {
+
+    private static final int ACCOUNTS = 1_000;
+
+    private static final Money AMOUNT = Money.of("1.00");
+
+    @Param({"locking", "conditional"})
+    public String mode;
+
+    private ConfigurableApplicationContext context;
+
+    private TransferService transferService;
+
+    private List<Long> userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = EmbeddedBank.start("--bank.transfer.mode=" + mode);
+        userIds = EmbeddedBank.seedUsers(context, ACCOUNTS, Money.of("1000000000.00"));
+        transferService = context.getBean(TransferService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Transfer transferMoney() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int sender = random.nextInt(ACCOUNTS);
+        int recipient = (sender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        return transferService.transferMoney(userIds.get(sender), userIds.get(recipient), AMOUNT);
+    }
+}
@@ -0,0 +1,86 @@
+package com.bankoperations.bankoperations.benchmark;
+
+import com.bankoperations.bankoperations.EmbeddedBank;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.exception.InvalidUserException;
+import com.bankoperations.bankoperations.service.UserKeyFilters;
+import com.bankoperations.bankoperations.service.UserService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uniqueness validation on user creation against an embedded database, with and without the
+ * in-memory key filters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ValidateUserBenchmark {
+
+    private static final int USERS = 10_000;
+
+    @Param({"true", "false"})
+    public boolean keyFilters;
+
+    private ConfigurableApplicationContext context;
+
+    private UserService userService;
+
+    private User newUser;
+
+    private User existingUser;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = EmbeddedBank.start("--bank.users.key-filters.enabled=" + keyFilters);
+        EmbeddedBank.seedUsers(context, USERS, Money.of("100.00"));
+        // The filters were built when the application started, before the users were seeded.
+        context.getBean(UserKeyFilters.class).build();
+        userService = context.getBean(UserService.class);
+
+        newUser = EmbeddedBank.newUser("fresh");
+        existingUser = EmbeddedBank.newUser("seed" + (USERS / 2));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean validateNewUser() {
+        return validate(newUser);
+    }
+
+    @Benchmark
+    public boolean validateExistingUser() {
+        return validate(existingUser);
+    }
+
+    private boolean validate(User user) {
+        try {
+            userService.validateUser(user);
+            return true;
+        } catch (InvalidUserException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.bankoperations.bankoperations.config;
+
+import com.bankoperations.bankoperations.service.BankMetrics;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Caps the number of requests in flight, by default at the size of the connection pool. With
+ * virtual threads Tomcat no longer bounds concurrency, so without this every request would get
+ * a thread and then queue inside HikariCP. Here excess requests wait in a fair queue and are
+ * answered with 503 when no permit frees up in time. A semaphore is used rather than a monitor,
+ * so a waiting virtual thread never pins its carrier.
+ * <p>
+ * By default the limit is on only when requests actually run on virtual threads, which needs
+ * {@code spring.threads.virtual.enabled} and Java 21; on platform threads Tomcat's pool already
+ * bounds concurrency. An async request, such as the streamed user export, keeps its permit until
+ * the async processing completes, times out or fails, not just until the filter chain returns.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+
+    private final long acquireTimeoutMs;
+
+    private final Semaphore permits;
+
+    private final BankMetrics bankMetrics;
+
+    private final static Logger log = LoggerFactory.getLogger(ConcurrencyLimitFilter.class);
+
+    @Autowired
+    public ConcurrencyLimitFilter(Environment environment,
+                                  @Value("${bank.concurrency.limit.max-in-flight:${spring.datasource.hikari.maximum-pool-size:10}}") int maxInFlight,
+                                  @Value("${bank.concurrency.limit.acquire-timeout-ms:5000}") long acquireTimeoutMs,
+                                  BankMetrics bankMetrics) {
+        this(environment.getProperty("bank.concurrency.limit.enabled", Boolean.class, runsOnVirtualThreads(environment)),
+                maxInFlight, acquireTimeoutMs, bankMetrics);
+    }
+
+    public ConcurrencyLimitFilter(boolean enabled, int maxInFlight, long acquireTimeoutMs, BankMetrics bankMetrics) {
+        this.enabled = enabled;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.permits = new Semaphore(maxInFlight, true);
+        this.bankMetrics = bankMetrics;
+        if (enabled) {
+            bankMetrics.monitorConcurrencyLimit(permits);
+            log.info("Requests in flight are limited to {}", maxInFlight);
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(
+            @NonNull HttpServletRequest request,
+            @NonNull HttpServletResponse response,
+            @NonNull FilterChain filterChain
+    ) throws ServletException, IOException {
+
+        if (!enabled) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServletException("Interrupted while waiting for a request permit", e);
+        }
+        if (!acquired) {
+            bankMetrics.requestRejected();
+            log.warn("Rejected {} {}, no request permit within {} ms", request.getMethod(), request.getRequestURI(),
+                    acquireTimeoutMs);
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Server is busy, retry later");
+            return;
+        }
+
+        Permit permit = new Permit();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(permit);
+            } else {
+                permit.release();
+            }
+        }
+    }
+
+    private static boolean runsOnVirtualThreads(Environment environment) {
+        return environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)
+                && Runtime.version().feature() >= 21;
+    }
+
+    /**
+     * Gives the permit back exactly once, whichever of the async events arrives first.
+     */
+    private class Permit implements AsyncListener {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // A new async cycle reuses the request; the permit stays held until it ends.
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.bankoperations.bankoperations.config;
+
+/**
+ * Where {@link JwtAuthenticationFilter} takes the principal of an authenticated request from,
+ * selected with {@code bank.auth.principal-source}.
+ */
+public enum PrincipalSource {
+
+    /**
+     * The user is looked up by username, through the in-process user details cache.
+     */
+    DATABASE,
+
+    /**
+     * The principal is built from the id and username claims of the verified token, without any lookup.
+     */
+    CLAIMS
+}
@@ -0,0 +1,82 @@
+package com.bankoperations.bankoperations.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replaces the single Boot datasource with the primary pool plus one pool per replica in
+ * {@code bank.datasource.replicas.urls}. Read-only transactions, such as user search and the
+ * user list, run on a replica; all other work and every read outside a read-only transaction
+ * stays on the primary. The authentication filter fills its user cache from the primary.
+ */
+@Configuration
+@ConditionalOnProperty(name = "bank.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaDataSourceConfiguration {
+
+    /**
+     * Milliseconds since the last replayed transaction, or 0 while the replica has replayed all
+     * WAL it received, so an idle primary does not make its replicas look stale. Having replayed
+     * everything received only means something while the WAL receiver is streaming: a replica
+     * cut off from the primary would report 0 forever. It then reports no lag at all, which
+     * takes it out of rotation. The status is only visible to roles with pg_read_all_stats (or
+     * pg_monitor), so the replica user needs one of them.
+     */
+    public static final String POSTGRES_LAG_QUERY = "SELECT CASE " +
+            "WHEN (SELECT status FROM pg_stat_wal_receiver) IS DISTINCT FROM 'streaming' THEN NULL " +
+            "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            @Value("${bank.datasource.replicas.urls}") List<String> urls,
+            @Value("${bank.datasource.replicas.username:${spring.datasource.username:}}") String username,
+            @Value("${bank.datasource.replicas.password:${spring.datasource.password:}}") String password,
+            @Value("${bank.datasource.replicas.maximum-pool-size:10}") int maximumPoolSize,
+            @Value("${bank.datasource.replicas.lag-query:}") String lagQuery,
+            @Value("${bank.datasource.replicas.max-lag-ms:1000}") long maxLagMs,
+            @Value("${bank.datasource.replicas.check-interval-ms:1000}") long checkIntervalMs) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            if (!StringUtils.hasText(url)) {
+                continue;
+            }
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setJdbcUrl(url.trim());
+            replica.setDriverClassName(properties.determineDriverClassName());
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setMaximumPoolSize(maximumPoolSize);
+            replica.setReadOnly(true);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas,
+                StringUtils.hasText(lagQuery) ? lagQuery : POSTGRES_LAG_QUERY, maxLagMs, checkIntervalMs);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,203 @@
+package com.bankoperations.bankoperations.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends the connections of read-only transactions to replica pools, round robin, and everything
+ * else to the primary. A replica is only used while its replication lag, measured by
+ * {@code lagQuery} every {@code checkIntervalMs}, stays within {@code maxLagMs}; a query that
+ * returns no row or NULL means the lag is unknown and counts as too much. A replica that
+ * cannot hand out a connection is taken out of rotation until its next successful check, and the
+ * read runs on the primary instead.
+ * <p>
+ * The routing key is read when the connection is fetched, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}; otherwise the
+ * transaction manager fetches the connection before the read-only flag of the transaction is set.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas = new ArrayList<>();
+
+    private final String lagQuery;
+
+    private final long maxLagMs;
+
+    private final long checkIntervalMs;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private ScheduledExecutorService checker;
+
+    private final static Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicaDataSources, String lagQuery,
+                                    long maxLagMs, long checkIntervalMs) {
+        this.primary = primary;
+        this.lagQuery = lagQuery;
+        this.maxLagMs = maxLagMs;
+        this.checkIntervalMs = checkIntervalMs;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicaDataSources.size(); i++) {
+            Replica replica = new Replica("replica-" + i, replicaDataSources.get(i));
+            replicas.add(replica);
+            targets.put(replica.name, replica.dataSource);
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicas();
+        if (!replicas.isEmpty() && checkIntervalMs > 0) {
+            checker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-lag-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            checker.scheduleWithFixedDelay(this::checkReplicas, checkIntervalMs, checkIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available) {
+                return replica.name;
+            }
+        }
+        return PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (!PRIMARY.equals(key)) {
+            Replica replica = replica(key);
+            try {
+                return replica.dataSource.getConnection();
+            } catch (SQLException e) {
+                markUnavailable(replica, e.getMessage());
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Measures the lag of every replica and puts it in or out of rotation. Runs on the
+     * {@code replica-lag-check} thread; public so that tests can run a check on demand.
+     */
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            Long lagMs = null;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                if (resultSet.next()) {
+                    double lag = resultSet.getDouble(1);
+                    if (!resultSet.wasNull()) {
+                        lagMs = (long) Math.ceil(lag);
+                    }
+                }
+            } catch (SQLException e) {
+                markUnavailable(replica, e.getMessage());
+                continue;
+            }
+
+            if (lagMs == null) {
+                markUnavailable(replica, "lag unknown, the replica may not be receiving WAL");
+            } else if (lagMs > maxLagMs) {
+                markUnavailable(replica, "lag of " + lagMs + " ms exceeds " + maxLagMs + " ms");
+            } else if (!replica.available) {
+                replica.available = true;
+                log.info("Replica {} is back in rotation, lag {} ms", replica.name, lagMs);
+            }
+        }
+    }
+
+    public boolean isAvailable(int replica) {
+        return replicas.get(replica).available;
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (checker != null) {
+            checker.shutdownNow();
+        }
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Replica replica(Object key) {
+        for (Replica replica : replicas) {
+            if (replica.name.equals(key)) {
+                return replica;
+            }
+        }
+        throw new IllegalStateException("Unknown replica " + key);
+    }
+
+    private static void markUnavailable(Replica replica, String reason) {
+        if (replica.available) {
+            replica.available = false;
+            log.warn("Replica {} taken out of rotation, reads go to the primary: {}", replica.name, reason);
+        }
+    }
+
+    private static class Replica {
+
+        private final String name;
+
+        private final DataSource dataSource;
+
+        private volatile boolean available = true;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
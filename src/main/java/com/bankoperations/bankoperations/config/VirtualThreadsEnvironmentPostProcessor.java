@@ -0,0 +1,43 @@
+package com.bankoperations.bankoperations.config;
+
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.util.StringUtils;
+
+/**
+ * Prepares the JVM for {@code spring.threads.virtual.enabled}, which moves request handling and
+ * {@code @Scheduled} work onto virtual threads. Runs before the context is created, so that
+ * {@code bank.threads.trace-pinned} (short or full) can still turn on the JDK's report of
+ * virtual threads that block while pinned to their carrier, typically inside a synchronized block.
+ */
+public class VirtualThreadsEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String TRACE_PINNED_THREADS = "jdk.tracePinnedThreads";
+
+    private final Log log;
+
+    public VirtualThreadsEnvironmentPostProcessor(DeferredLogFactory logFactory) {
+        this.log = logFactory.getLog(VirtualThreadsEnvironmentPostProcessor.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            return;
+        }
+        if (Runtime.version().feature() < 21) {
+            log.warn("spring.threads.virtual.enabled needs Java 21 or newer, running on platform threads");
+            return;
+        }
+
+        String tracePinned = environment.getProperty("bank.threads.trace-pinned");
+        if (StringUtils.hasText(tracePinned) && System.getProperty(TRACE_PINNED_THREADS) == null) {
+            System.setProperty(TRACE_PINNED_THREADS, tracePinned);
+        }
+        log.info("Running on virtual threads, pinned thread tracing: "
+                + System.getProperty(TRACE_PINNED_THREADS, "off"));
+    }
+}
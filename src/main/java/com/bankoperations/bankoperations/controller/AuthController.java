@@ -1,10 +1,13 @@
 package com.bankoperations.bankoperations.controller;
 
 
-import com.bankoperations.bankoperations.dto.JwtAuthenticationResponse;
 import com.bankoperations.bankoperations.dto.SignInRequest;
+import com.bankoperations.bankoperations.exception.LoginThrottledException;
 import com.bankoperations.bankoperations.service.AuthenticationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,7 +19,13 @@ public class AuthController {
     private final AuthenticationService authenticationService;
 
     @PostMapping("/sign-in")
-    public JwtAuthenticationResponse signIn(@RequestBody SignInRequest request) {
-        return authenticationService.signIn(request);
+    public ResponseEntity<?> signIn(@RequestBody SignInRequest request) {
+        try {
+            return ResponseEntity.ok(authenticationService.signIn(request));
+        } catch (LoginThrottledException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(e.getMessage());
+        }
     }
 }
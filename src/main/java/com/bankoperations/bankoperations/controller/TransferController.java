@@ -1,18 +1,28 @@
 package com.bankoperations.bankoperations.controller;
 
+import com.bankoperations.bankoperations.dto.TransferRequest;
+import com.bankoperations.bankoperations.dto.TransferResponse;
+import com.bankoperations.bankoperations.entity.Money;
 import com.bankoperations.bankoperations.exception.InsufficientBalanceException;
 import com.bankoperations.bankoperations.exception.InvalidTransferException;
 import com.bankoperations.bankoperations.exception.UserNotFoundException;
+import com.bankoperations.bankoperations.service.BalanceService;
+import com.bankoperations.bankoperations.service.TransferHistoryService;
+import com.bankoperations.bankoperations.service.TransferIdempotencyService;
 import com.bankoperations.bankoperations.service.TransferService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
-import java.math.BigDecimal;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api")
@@ -21,13 +31,66 @@ public class TransferController {
     @Autowired
     private TransferService transferService;
 
+    @Autowired
+    private BalanceService balanceService;
+
+    @Autowired
+    private TransferHistoryService transferHistoryService;
+
+    @Autowired
+    private TransferIdempotencyService transferIdempotencyService;
+
     @PostMapping("/sendMoney/{senderId}/{recipientId}/{amount}")
     public ResponseEntity<?> sendMoney(@PathVariable Long senderId, @PathVariable Long recipientId,
-                                       @PathVariable BigDecimal amount) {
+                                       @PathVariable Money amount,
+                                       @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
         try {
-            return ResponseEntity.ok(transferService.transferMoney(senderId, recipientId, amount));
+            if (idempotencyKey != null) {
+                return ResponseEntity.ok(transferIdempotencyService.transferMoney(idempotencyKey, senderId, recipientId, amount));
+            }
+            return ResponseEntity.ok(TransferResponse.of(transferService.transferMoney(senderId, recipientId, amount)));
         } catch (UserNotFoundException | InsufficientBalanceException | InvalidTransferException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
     }
+
+    @PostMapping("/sendMoney/batch")
+    public ResponseEntity<?> sendMoneyBatch(@RequestBody List<TransferRequest> transfers) {
+        try {
+            return ResponseEntity.ok(transferService.transferBatch(transfers));
+        } catch (InvalidTransferException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/balance/{userId}")
+    public ResponseEntity<?> getBalance(@PathVariable Long userId) {
+        try {
+            return ResponseEntity.ok(balanceService.getBalance(userId));
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/transfers/{userId}/sent")
+    public ResponseEntity<?> getSentTransfers(@PathVariable Long userId,
+                                              @RequestParam(required = false) String cursor,
+                                              @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(transferHistoryService.getSent(userId, size, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/transfers/{userId}/received")
+    public ResponseEntity<?> getReceivedTransfers(@PathVariable Long userId,
+                                                  @RequestParam(required = false) String cursor,
+                                                  @RequestParam(defaultValue = "20") int size) {
+        try {
+            return ResponseEntity.ok(transferHistoryService.getReceived(userId, size, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
 }
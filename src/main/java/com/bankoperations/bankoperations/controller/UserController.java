@@ -1,5 +1,6 @@
 package com.bankoperations.bankoperations.controller;
 
+import com.bankoperations.bankoperations.dto.UserResponse;
 import com.bankoperations.bankoperations.entity.User;
 import com.bankoperations.bankoperations.exception.InvalidUserException;
 import com.bankoperations.bankoperations.exception.NoContactInfoException;
@@ -12,9 +13,12 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Date;
 import java.util.List;
@@ -27,16 +31,25 @@ public class UserController {
     private UserService userService;
 
     @GetMapping("/getAllUsers")
-    public List<User> getAllUsers() {
+    public List<UserResponse> getAllUsers() {
         return userService.getAllUsers();
     }
 
+    @GetMapping(value = "/getAllUsers", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAllUsers() {
+        StreamingResponseBody body = outputStream -> userService.exportUsers(outputStream);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @PostMapping("/createUser")
     public ResponseEntity<?> createUser(@RequestBody User user) {
         try {
-            return ResponseEntity.ok(userService.createUser(user));
+            return ResponseEntity.ok(UserResponse.of(userService.createUser(user)));
         } catch (InvalidUserException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Invalid user: " + e.getMessage());
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body("Invalid user: username, email or phone number is already in use");
         }
     }
 
@@ -44,8 +57,8 @@ public class UserController {
     public ResponseEntity<?> updateEmail(@PathVariable Long userID,
                                          @RequestBody UpdateEmailRequest updateEmailRequest) {
         try {
-            return ResponseEntity.ok(userService.updateEmail(userID, updateEmailRequest));
-        } catch (UserNotFoundException e) {
+            return ResponseEntity.ok(UserResponse.of(userService.updateEmail(userID, updateEmailRequest)));
+        } catch (UserNotFoundException | InvalidUserException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
     }
@@ -54,8 +67,8 @@ public class UserController {
     public ResponseEntity<?> updatePhone(@PathVariable Long userID,
                                          @RequestBody UpdatePhoneRequest updatePhoneRequest) {
         try {
-            return ResponseEntity.ok(userService.updatePhoneNumber(userID, updatePhoneRequest));
-        } catch (UserNotFoundException e) {
+            return ResponseEntity.ok(UserResponse.of(userService.updatePhoneNumber(userID, updatePhoneRequest)));
+        } catch (UserNotFoundException | InvalidUserException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
         }
     }
@@ -79,7 +92,7 @@ public class UserController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<Object>> searchUsers(
+    public ResponseEntity<List<UserResponse>> searchUsers(
             @RequestParam(required = false) String fullName,
             @RequestParam(required = false) String email,
             @RequestParam(required = false) String phoneNumber,
@@ -96,8 +109,30 @@ public class UserController {
 
         Pageable pageable = PageRequest.of(page, size, Sort.by(order));
 
-        List<Object> users = userService.searchUsers(fullName, email, phoneNumber, dateOfBirth, pageable);
+        List<UserResponse> users = userService.searchUsers(fullName, email, phoneNumber, dateOfBirth, pageable);
 
         return ResponseEntity.ok(users);
     }
+
+    @GetMapping("/search/cursor")
+    public ResponseEntity<?> searchUsersAfter(
+            @RequestParam(required = false) String fullName,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String phoneNumber,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) Date dateOfBirth,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "id,asc") String sort) {
+
+        String[] sortParts = sort.split(",");
+        String sortBy = sortParts[0];
+        String sortOrder = sortParts.length > 1 ? sortParts[1] : "asc";
+
+        try {
+            return ResponseEntity.ok(userService.searchUsersAfter(fullName, email, phoneNumber, dateOfBirth,
+                    sortBy, Sort.Direction.fromString(sortOrder), size, cursor));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,70 @@
+package com.bankoperations.bankoperations.dto;
+
+import com.bankoperations.bankoperations.entity.User;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import io.jsonwebtoken.Claims;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Lightweight security principal. Unlike the {@link User} entity it carries no bank account
+ * and can be cached across requests or built straight from token claims.
+ */
+@Data
+@AllArgsConstructor
+public class AuthenticatedUser implements UserDetails {
+
+    private Long id;
+
+    private String username;
+
+    private String email;
+
+    @JsonIgnore
+    private String password;
+
+    public static AuthenticatedUser of(User user) {
+        return new AuthenticatedUser(user.getId(), user.getUsername(), user.getEmail(), user.getPassword());
+    }
+
+    public static AuthenticatedUser fromClaims(Claims claims) {
+        Number id = claims.get("id", Number.class);
+        return new AuthenticatedUser(id == null ? null : id.longValue(), claims.getSubject(),
+                claims.get("username", String.class), null);
+    }
+
+    @JsonIgnore
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of();
+    }
+
+    @JsonIgnore
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @JsonIgnore
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @JsonIgnore
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @JsonIgnore
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
@@ -0,0 +1,19 @@
+package com.bankoperations.bankoperations.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchTransferResponse {
+
+    private int completed;
+
+    private int rejected;
+
+    private List<TransferResult> results;
+}
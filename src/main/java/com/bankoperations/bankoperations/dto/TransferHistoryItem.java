@@ -0,0 +1,22 @@
+package com.bankoperations.bankoperations.dto;
+
+import com.bankoperations.bankoperations.entity.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferHistoryItem {
+
+    private Long id;
+
+    private Long counterpartyId;
+
+    private Money amount;
+
+    private Date timestamp;
+}
@@ -0,0 +1,18 @@
+package com.bankoperations.bankoperations.dto;
+
+import com.bankoperations.bankoperations.entity.Money;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferRequest {
+
+    private Long senderId;
+
+    private Long recipientId;
+
+    private Money amount;
+}
@@ -0,0 +1,30 @@
+package com.bankoperations.bankoperations.dto;
+
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.Transfer;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResponse {
+
+    private Long id;
+
+    private Long senderId;
+
+    private Long recipientId;
+
+    private Money amount;
+
+    private Date timestamp;
+
+    public static TransferResponse of(Transfer transfer) {
+        return new TransferResponse(transfer.getId(), transfer.getSender().getId(), transfer.getRecipient().getId(),
+                transfer.getAmount(), transfer.getTimestamp());
+    }
+}
@@ -0,0 +1,22 @@
+package com.bankoperations.bankoperations.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferResult {
+
+    public enum Status {
+        COMPLETED,
+        REJECTED
+    }
+
+    private int index;
+
+    private Status status;
+
+    private String message;
+}
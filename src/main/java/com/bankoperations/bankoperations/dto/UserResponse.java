@@ -0,0 +1,39 @@
+package com.bankoperations.bankoperations.dto;
+
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * Public view of a user. Read endpoints build it straight from the query, so only these
+ * columns are fetched; the entity with its password hash and bank account is never serialized.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserResponse {
+
+    private Long id;
+
+    private String username;
+
+    private String fullName;
+
+    private String email;
+
+    private String phoneNumber;
+
+    private Date dateOfBirth;
+
+    private Money balance;
+
+    public static UserResponse of(User user) {
+        Money balance = user.getBankAccount() == null ? null : user.getBankAccount().getBalance();
+        return new UserResponse(user.getId(), user.getUsername(), user.getFullName(), user.getEmail(),
+                user.getPhoneNumber(), user.getDateOfBirth(), balance);
+    }
+}
@@ -0,0 +1,17 @@
+package com.bankoperations.bankoperations.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSearchPage {
+
+    private List<UserResponse> items;
+
+    private String nextCursor;
+}
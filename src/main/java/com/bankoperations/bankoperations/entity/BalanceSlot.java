@@ -0,0 +1,24 @@
+package com.bankoperations.bankoperations.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+@Entity
+@Data
+@Table(name = "bank_account_slots",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"bank_account_id", "slot"}))
+public class BalanceSlot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bank_account_id", nullable = false)
+    private Long bankAccountId;
+
+    @Column(nullable = false)
+    private int slot;
+
+    @Column(nullable = false, precision = 19, scale = Money.SCALE)
+    private Money balance;
+}
@@ -3,8 +3,10 @@ package com.bankoperations.bankoperations.entity;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
-import java.math.BigDecimal;
 
 
 @Entity
@@ -13,7 +15,9 @@ import java.math.BigDecimal;
 public class BankAccount {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "bank_accounts_id_seq")
+    @GenericGenerator(name = "bank_accounts_id_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "bank_accounts_id_seq"))
     private Long id;
 
     @OneToOne
@@ -21,7 +25,24 @@ public class BankAccount {
     @JsonIgnore
     private User user;
 
+    @Column(nullable = false, precision = 19, scale = Money.SCALE)
+    private Money balance;
+
+    @Column(name = "slot_count", nullable = false)
+    @JsonIgnore
+    private int slotCount;
+
+    @Column(name = "ledger_position", nullable = false)
+    @JsonIgnore
+    private long ledgerPosition;
+
+    /**
+     * Bumped by every balance change, including the bulk UPDATE statements, so an account
+     * written from a stale read fails with an optimistic locking error.
+     */
+    @Version
     @Column(nullable = false)
-    private BigDecimal balance;
+    @JsonIgnore
+    private long version;
 
 }
@@ -0,0 +1,47 @@
+package com.bankoperations.bankoperations.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * Accounts with {@code fromId < id <= toId} of one interest tick. A node owns the partition
+ * while {@code leaseUntil} is in the future; {@code checkpointId} is the last account id that
+ * has been credited, moved forward in the same transaction as the credit.
+ */
+@Entity
+@Data
+@Table(name = "interest_partitions",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"tick", "partition_no"}),
+        indexes = @Index(name = "idx_interest_partitions_open", columnList = "completed_at, tick, partition_no"))
+public class InterestPartition {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private long tick;
+
+    @Column(name = "partition_no", nullable = false)
+    private int partitionNo;
+
+    @Column(name = "from_id", nullable = false)
+    private long fromId;
+
+    @Column(name = "to_id", nullable = false)
+    private long toId;
+
+    @Column(name = "checkpoint_id", nullable = false)
+    private long checkpointId;
+
+    @Column(length = 128)
+    private String owner;
+
+    @Column(name = "lease_until")
+    private Date leaseUntil;
+
+    @Column(name = "completed_at")
+    private Date completedAt;
+}
@@ -0,0 +1,28 @@
+package com.bankoperations.bankoperations.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * One interest period. The node that inserts the row splits the accounts into the partitions
+ * of the tick; every other node finds the row taken and only works on those partitions.
+ */
+@Entity
+@Data
+@Table(name = "interest_ticks")
+public class InterestTick {
+
+    @Id
+    private Long tick;
+
+    @Column(nullable = false)
+    private int partitions;
+
+    @Column(name = "planned_by", nullable = false, length = 128)
+    private String plannedBy;
+
+    @Column(name = "planned_at", nullable = false)
+    private Date plannedAt;
+}
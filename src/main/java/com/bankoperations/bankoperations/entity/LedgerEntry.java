@@ -0,0 +1,35 @@
+package com.bankoperations.bankoperations.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.Immutable;
+
+import java.util.Date;
+
+@Entity
+@Data
+@Immutable
+@Table(name = "ledger_entries",
+        indexes = @Index(name = "idx_ledger_entries_account_id", columnList = "bank_account_id, id"))
+public class LedgerEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "bank_account_id", nullable = false)
+    private Long bankAccountId;
+
+    @Column(name = "transfer_id")
+    private Long transferId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entry_type", nullable = false)
+    private LedgerEntryType type;
+
+    @Column(nullable = false, precision = 19, scale = Money.SCALE)
+    private Money amount;
+
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+}
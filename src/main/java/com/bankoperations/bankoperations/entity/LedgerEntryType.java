@@ -0,0 +1,8 @@
+package com.bankoperations.bankoperations.entity;
+
+public enum LedgerEntryType {
+    TRANSFER_DEBIT,
+    TRANSFER_CREDIT,
+    BATCH_SETTLEMENT,
+    INTEREST
+}
@@ -0,0 +1,32 @@
+package com.bankoperations.bankoperations.entity;
+
+import org.hibernate.MappingException;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+import java.util.Properties;
+
+/**
+ * Sequence generator whose allocation size comes from the {@code bank.id.allocation-size}
+ * Hibernate setting instead of the entity mapping, so every pooled sequence shares one
+ * configured block size. The size has to match the sequence's INCREMENT BY: with
+ * {@code increment_size_mismatch_strategy=fix} Hibernate adopts the database increment, so
+ * until the sequence is altered every id still costs a sequence call.
+ */
+public class PooledSequenceGenerator extends SequenceStyleGenerator {
+
+    public static final String ALLOCATION_SIZE = "bank.id.allocation-size";
+
+    public static final int DEFAULT_ALLOCATION_SIZE = 50;
+
+    @Override
+    public void configure(Type type, Properties parameters, ServiceRegistry serviceRegistry) throws MappingException {
+        Object allocationSize = serviceRegistry.requireService(ConfigurationService.class)
+                .getSettings()
+                .getOrDefault(ALLOCATION_SIZE, DEFAULT_ALLOCATION_SIZE);
+        parameters.setProperty(INCREMENT_PARAM, allocationSize.toString());
+        super.configure(type, parameters, serviceRegistry);
+    }
+}
@@ -2,17 +2,24 @@ package com.bankoperations.bankoperations.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 
-import java.math.BigDecimal;
 import java.util.Date;
 
 @Entity
 @Data
-@Table(name = "transfers")
+@Table(name = "transfers", indexes = {
+        @Index(name = "idx_transfers_sender_timestamp_id", columnList = "sender_id, timestamp, id"),
+        @Index(name = "idx_transfers_recipient_timestamp_id", columnList = "recipient_id, timestamp, id")
+})
 public class Transfer {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "transfers_id_seq")
+    @GenericGenerator(name = "transfers_id_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "transfers_id_seq"))
     private Long id;
 
     @ManyToOne
@@ -23,8 +30,8 @@ public class Transfer {
     @JoinColumn(name = "recipient_id", nullable = false)
     private User recipient;
 
-    @Column(nullable = false)
-    private BigDecimal amount;
+    @Column(nullable = false, precision = 19, scale = Money.SCALE)
+    private Money amount;
 
     @Column(nullable = false)
     private Date timestamp;
@@ -0,0 +1,39 @@
+package com.bankoperations.bankoperations.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * An Idempotency-Key of a money transfer together with the request it was first used for.
+ * Keys are unique per sender, not globally. The key is claimed in the transaction of the transfer, so it is stored if and only if the
+ * transfer committed.
+ */
+@Entity
+@Data
+@IdClass(TransferIdempotencyKeyId.class)
+@Table(name = "transfer_idempotency_keys",
+        indexes = @Index(name = "idx_transfer_idempotency_keys_created_at", columnList = "created_at"))
+public class TransferIdempotencyKey {
+
+    @Id
+    @Column(name = "sender_id", nullable = false)
+    private Long senderId;
+
+    @Id
+    @Column(name = "idempotency_key", length = 128)
+    private String key;
+
+    @Column(name = "recipient_id", nullable = false)
+    private Long recipientId;
+
+    @Column(nullable = false, precision = 19, scale = Money.SCALE)
+    private Money amount;
+
+    @Column(name = "transfer_id")
+    private Long transferId;
+
+    @Column(name = "created_at", nullable = false)
+    private Date createdAt;
+}
@@ -0,0 +1,21 @@
+package com.bankoperations.bankoperations.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Primary key of a {@link TransferIdempotencyKey}: keys are scoped by the sender, so two senders
+ * choosing the same key never see each other's transfers.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransferIdempotencyKeyId implements Serializable {
+
+    private Long senderId;
+
+    private String key;
+}
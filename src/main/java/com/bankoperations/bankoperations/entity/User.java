@@ -1,46 +1,58 @@
 package com.bankoperations.bankoperations.entity;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
-import java.math.BigDecimal;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 
 @Data
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_full_name_id", columnList = "fullName, id"),
+        @Index(name = "idx_users_username_id", columnList = "username, id"),
+        @Index(name = "idx_users_date_of_birth_id", columnList = "dateOfBirth, id")
+}, uniqueConstraints = {
+        @UniqueConstraint(name = "uk_users_username", columnNames = "username"),
+        @UniqueConstraint(name = "uk_users_email", columnNames = "email"),
+        @UniqueConstraint(name = "uk_users_phone_number", columnNames = "phoneNumber")
+})
 public class User implements UserDetails {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "users_id_seq")
+    @GenericGenerator(name = "users_id_seq", type = PooledSequenceGenerator.class,
+            parameters = @Parameter(name = SequenceStyleGenerator.SEQUENCE_PARAM, value = "users_id_seq"))
     private Long id;
 
     @Column(nullable = false)
     private String username;
 
+    @JsonProperty(access = JsonProperty.Access.WRITE_ONLY)
     @Column(nullable = false)
     private String password;
 
     @Column(nullable = false)
     private String fullName;
 
-    @Column()
     private String email;
 
-    @Column()
     private String phoneNumber;
 
     @Column(nullable = false)
     private Date dateOfBirth;
 
-    @Column(nullable = false)
-    private BigDecimal initialDeposit;
+    @Column(nullable = false, precision = 19, scale = Money.SCALE)
+    private Money initialDeposit;
 
     @OneToOne(mappedBy = "user", cascade = CascadeType.ALL)
     private BankAccount bankAccount;
@@ -0,0 +1,7 @@
+package com.bankoperations.bankoperations.exception;
+
+public class LoginThrottledException extends Exception{
+    public LoginThrottledException(String message) {
+        super(message);
+    }
+}
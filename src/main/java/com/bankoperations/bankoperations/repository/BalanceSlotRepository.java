@@ -0,0 +1,41 @@
+package com.bankoperations.bankoperations.repository;
+
+import com.bankoperations.bankoperations.entity.BalanceSlot;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public interface BalanceSlotRepository extends JpaRepository<BalanceSlot, Long> {
+
+    List<BalanceSlot> findByBankAccountId(Long bankAccountId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM BalanceSlot s WHERE s.bankAccountId = :bankAccountId ORDER BY s.slot")
+    List<BalanceSlot> findByBankAccountIdForUpdate(@Param("bankAccountId") Long bankAccountId);
+
+    @Query(value = "SELECT COALESCE(SUM(s.balance), 0) FROM bank_account_slots s WHERE s.bank_account_id = :bankAccountId",
+            nativeQuery = true)
+    BigDecimal sumBalance(@Param("bankAccountId") Long bankAccountId);
+
+    @Modifying
+    @Query(value = "UPDATE bank_account_slots SET balance = balance + :amount " +
+            "WHERE bank_account_id = :bankAccountId AND slot = :slot", nativeQuery = true)
+    int credit(@Param("bankAccountId") Long bankAccountId, @Param("slot") int slot,
+               @Param("amount") BigDecimal amount);
+
+    @Query(value = "SELECT s.id FROM bank_account_slots s " +
+            "WHERE s.bank_account_id > :fromId AND s.bank_account_id <= :toId ORDER BY s.id FOR UPDATE",
+            nativeQuery = true)
+    List<Long> lockRange(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Modifying
+    @Query(value = "UPDATE bank_account_slots SET balance = 0 " +
+            "WHERE bank_account_id > :fromId AND bank_account_id <= :toId AND balance <> 0", nativeQuery = true)
+    int clearRange(@Param("fromId") long fromId, @Param("toId") long toId);
+}
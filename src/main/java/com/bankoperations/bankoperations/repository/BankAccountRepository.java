@@ -2,7 +2,62 @@ package com.bankoperations.bankoperations.repository;
 
 import com.bankoperations.bankoperations.entity.BankAccount;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.List;
 
 public interface BankAccountRepository extends JpaRepository<BankAccount, Long> {
     BankAccount findByUserId(Long userId);
+
+    @Query("SELECT a.user.id FROM BankAccount a WHERE a.slotCount > 0")
+    List<Long> findStripedUserIds();
+
+    /**
+     * Takes {@code amount} from the account of the user only if the balance covers it. Returns 0
+     * when it does not, or when the user has no account.
+     */
+    @Modifying
+    @Query(value = "UPDATE bank_accounts SET balance = balance - :amount, version = version + 1 " +
+            "WHERE user_id = :userId AND balance >= :amount", nativeQuery = true)
+    int debit(@Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query(value = "UPDATE bank_accounts SET balance = balance + :amount, version = version + 1 " +
+            "WHERE user_id = :userId", nativeQuery = true)
+    int credit(@Param("userId") Long userId, @Param("amount") BigDecimal amount);
+
+    @Modifying
+    @Query(value = "UPDATE bank_accounts ba SET balance = ba.balance + " +
+            "(SELECT COALESCE(SUM(s.balance), 0) FROM bank_account_slots s WHERE s.bank_account_id = ba.id), " +
+            "version = ba.version + 1 " +
+            "WHERE ba.slot_count > 0 AND ba.id > :fromId AND ba.id <= :toId", nativeQuery = true)
+    int consolidateSlots(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Query("SELECT MIN(a.id) FROM BankAccount a")
+    Long findMinId();
+
+    @Query("SELECT MAX(a.id) FROM BankAccount a")
+    Long findMaxId();
+
+    @Query(value = "SELECT MAX(chunk.id) FROM (SELECT ba.id FROM bank_accounts ba " +
+            "WHERE ba.id > :fromId AND ba.id <= :toId ORDER BY ba.id LIMIT :chunkSize) chunk",
+            nativeQuery = true)
+    Long findChunkUpperBound(@Param("fromId") long fromId, @Param("toId") long toId,
+                             @Param("chunkSize") int chunkSize);
+
+    /**
+     * The new balance is rounded half up to cents, the same rule as {@code Money.multiply}.
+     */
+    @Modifying
+    @Query(value = "UPDATE bank_accounts ba SET balance = ROUND(LEAST(ba.balance * :rate, " +
+            "(SELECT u.initial_deposit * :cap FROM users u WHERE u.id = ba.user_id)), 2), version = ba.version + 1 " +
+            "WHERE ba.id > :fromId AND ba.id <= :toId " +
+            "AND ba.balance <> ROUND(LEAST(ba.balance * :rate, " +
+            "(SELECT u.initial_deposit * :cap FROM users u WHERE u.id = ba.user_id)), 2)",
+            nativeQuery = true)
+    int accrueInterest(@Param("fromId") long fromId, @Param("toId") long toId,
+                       @Param("rate") BigDecimal rate, @Param("cap") BigDecimal cap);
 }
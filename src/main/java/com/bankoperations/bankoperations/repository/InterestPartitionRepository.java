@@ -0,0 +1,46 @@
+package com.bankoperations.bankoperations.repository;
+
+import com.bankoperations.bankoperations.entity.InterestPartition;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+import java.util.List;
+
+public interface InterestPartitionRepository extends JpaRepository<InterestPartition, Long> {
+
+    /**
+     * Unfinished partitions that are free or whose owner let the lease expire, oldest tick first.
+     */
+    @Query("SELECT p.id FROM InterestPartition p WHERE p.completedAt IS NULL " +
+            "AND (p.owner IS NULL OR p.leaseUntil < :now) ORDER BY p.tick, p.partitionNo")
+    List<Long> findClaimable(@Param("now") Date now, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE InterestPartition p SET p.owner = :owner, p.leaseUntil = :leaseUntil " +
+            "WHERE p.id = :id AND p.completedAt IS NULL AND (p.owner IS NULL OR p.leaseUntil < :now)")
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("now") Date now,
+              @Param("leaseUntil") Date leaseUntil);
+
+    /**
+     * Moves the checkpoint from {@code fromId} to {@code toId} and renews the lease. Matches no
+     * row when the lease has passed to another node, which must roll back the chunk.
+     */
+    @Modifying
+    @Query("UPDATE InterestPartition p SET p.checkpointId = :toId, p.leaseUntil = :leaseUntil " +
+            "WHERE p.id = :id AND p.owner = :owner AND p.checkpointId = :fromId AND p.completedAt IS NULL")
+    int checkpoint(@Param("id") Long id, @Param("owner") String owner, @Param("fromId") long fromId,
+                   @Param("toId") long toId, @Param("leaseUntil") Date leaseUntil);
+
+    @Modifying
+    @Query("UPDATE InterestPartition p SET p.completedAt = :now " +
+            "WHERE p.id = :id AND p.owner = :owner AND p.completedAt IS NULL")
+    int complete(@Param("id") Long id, @Param("owner") String owner, @Param("now") Date now);
+
+    @Modifying
+    @Query("DELETE FROM InterestPartition p WHERE p.tick < :tick")
+    int deleteBefore(@Param("tick") long tick);
+}
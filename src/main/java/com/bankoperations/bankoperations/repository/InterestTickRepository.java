@@ -0,0 +1,25 @@
+package com.bankoperations.bankoperations.repository;
+
+import com.bankoperations.bankoperations.entity.InterestTick;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Date;
+
+public interface InterestTickRepository extends JpaRepository<InterestTick, Long> {
+
+    /**
+     * Fails on the primary key when another node has already planned the tick.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO interest_ticks (tick, partitions, planned_by, planned_at) " +
+            "VALUES (:tick, :partitions, :plannedBy, :plannedAt)", nativeQuery = true)
+    int insert(@Param("tick") long tick, @Param("partitions") int partitions, @Param("plannedBy") String plannedBy,
+               @Param("plannedAt") Date plannedAt);
+
+    @Modifying
+    @Query("DELETE FROM InterestTick t WHERE t.tick < :tick")
+    int deleteBefore(@Param("tick") long tick);
+}
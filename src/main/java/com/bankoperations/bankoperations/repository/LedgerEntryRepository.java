@@ -0,0 +1,46 @@
+package com.bankoperations.bankoperations.repository;
+
+import com.bankoperations.bankoperations.entity.LedgerEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.util.Date;
+
+public interface LedgerEntryRepository extends JpaRepository<LedgerEntry, Long> {
+
+    @Query(value = "SELECT ba.balance + COALESCE((SELECT SUM(e.amount) FROM ledger_entries e " +
+            "WHERE e.bank_account_id = ba.id AND e.id > ba.ledger_position), 0) " +
+            "FROM bank_accounts ba WHERE ba.id = :bankAccountId", nativeQuery = true)
+    BigDecimal currentBalance(@Param("bankAccountId") Long bankAccountId);
+
+    /**
+     * Folds all entries of the accounts with {@code fromId < id <= toId} into their snapshots. The
+     * users of the range must be locked first: every writer of ledger entries holds a lock on the
+     * user, so once the locks are granted no entry of these accounts is still in flight.
+     */
+    @Modifying
+    @Query(value = "UPDATE bank_accounts ba SET balance = ba.balance + " +
+            "(SELECT COALESCE(SUM(e.amount), 0) FROM ledger_entries e WHERE e.bank_account_id = ba.id " +
+            "AND e.id > ba.ledger_position), " +
+            "ledger_position = (SELECT MAX(e.id) FROM ledger_entries e WHERE e.bank_account_id = ba.id), " +
+            "version = ba.version + 1 " +
+            "WHERE ba.id > :fromId AND ba.id <= :toId " +
+            "AND EXISTS (SELECT 1 FROM ledger_entries e WHERE e.bank_account_id = ba.id " +
+            "AND e.id > ba.ledger_position)", nativeQuery = true)
+    int compact(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    @Modifying
+    @Query(value = "INSERT INTO ledger_entries (bank_account_id, entry_type, amount, created_at) " +
+            "SELECT b.id, 'INTEREST', ROUND(LEAST(b.current_balance * :rate, b.max_balance), 2) - b.current_balance, :now " +
+            "FROM (SELECT ba.id, ba.balance + COALESCE((SELECT SUM(e.amount) FROM ledger_entries e " +
+            "WHERE e.bank_account_id = ba.id AND e.id > ba.ledger_position), 0) AS current_balance, " +
+            "u.initial_deposit * :cap AS max_balance " +
+            "FROM bank_accounts ba JOIN users u ON u.id = ba.user_id " +
+            "WHERE ba.id > :fromId AND ba.id <= :toId) b " +
+            "WHERE ROUND(LEAST(b.current_balance * :rate, b.max_balance), 2) <> b.current_balance", nativeQuery = true)
+    int accrueInterest(@Param("fromId") long fromId, @Param("toId") long toId, @Param("rate") BigDecimal rate,
+                       @Param("cap") BigDecimal cap, @Param("now") Date now);
+}
@@ -0,0 +1,53 @@
+package com.bankoperations.bankoperations.repository;
+
+import com.bankoperations.bankoperations.entity.Transfer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Inserts transfer rows with JDBC batching, bypassing the entity manager so no entity state is
+ * tracked or dirty-checked for the batch. Ids are drawn up front from the same pooled sequence
+ * generator the entity uses, one sequence call per allocation block, so the transfers keep their
+ * ids for the audit log and never collide with transfers persisted through JPA.
+ */
+@Repository
+public class TransferBatchWriter {
+
+    private static final String INSERT_TRANSFER =
+            "INSERT INTO transfers (id, sender_id, recipient_id, amount, timestamp) VALUES (?, ?, ?, ?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public void insertAll(List<Transfer> transfers, int batchSize) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        IdentifierGenerator generator = (IdentifierGenerator) session.getFactory().getMappingMetamodel()
+                .getEntityDescriptor(Transfer.class)
+                .getGenerator();
+        for (Transfer transfer : transfers) {
+            transfer.setId((Long) generator.generate(session, transfer));
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_TRANSFER, transfers, batchSize, (statement, transfer) -> {
+            statement.setLong(1, transfer.getId());
+            statement.setLong(2, transfer.getSender().getId());
+            statement.setLong(3, transfer.getRecipient().getId());
+            statement.setBigDecimal(4, transfer.getAmount().toBigDecimal());
+            statement.setTimestamp(5, new Timestamp(transfer.getTimestamp().getTime()));
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package com.bankoperations.bankoperations.repository;
+
+import com.bankoperations.bankoperations.entity.TransferIdempotencyKey;
+import com.bankoperations.bankoperations.entity.TransferIdempotencyKeyId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.Optional;
+
+public interface TransferIdempotencyKeyRepository extends JpaRepository<TransferIdempotencyKey, TransferIdempotencyKeyId> {
+
+    /**
+     * Read on the primary, a replica may not have the key of a transfer that just committed.
+     */
+    @Override
+    @Transactional
+    Optional<TransferIdempotencyKey> findById(TransferIdempotencyKeyId id);
+
+    /**
+     * Inserts the key right away instead of at flush time. A concurrent transaction claiming
+     * the same key for the same sender waits on the primary key until this one ends, then fails if it committed.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO transfer_idempotency_keys (idempotency_key, sender_id, recipient_id, amount, created_at) " +
+            "VALUES (:key, :senderId, :recipientId, :amount, :createdAt)", nativeQuery = true)
+    int claim(@Param("key") String key, @Param("senderId") Long senderId, @Param("recipientId") Long recipientId,
+              @Param("amount") BigDecimal amount, @Param("createdAt") Date createdAt);
+
+    @Modifying
+    @Query("UPDATE TransferIdempotencyKey k SET k.transferId = :transferId " +
+            "WHERE k.senderId = :senderId AND k.key = :key")
+    int complete(@Param("senderId") Long senderId, @Param("key") String key, @Param("transferId") Long transferId);
+
+    @Modifying
+    @Query("DELETE FROM TransferIdempotencyKey k WHERE k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") Date before);
+}
@@ -1,7 +1,52 @@
 package com.bankoperations.bankoperations.repository;
 
+import com.bankoperations.bankoperations.dto.TransferHistoryItem;
+import com.bankoperations.bankoperations.dto.TransferResponse;
 import com.bankoperations.bankoperations.entity.Transfer;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * The history queries seek past a {@code (timestamp, id)} cursor. The {@code timestamp <= :timestamp}
+ * conjunct is implied by the tie-break but is what the database can use as the start of the
+ * index range; without it only the user prefix is seeked and every newer row is filtered.
+ */
 public interface TransferRepository extends JpaRepository<Transfer, Long> {
+
+    @Query("SELECT new com.bankoperations.bankoperations.dto.TransferHistoryItem(t.id, t.recipient.id, t.amount, t.timestamp) " +
+            "FROM Transfer t WHERE t.sender.id = :userId ORDER BY t.timestamp DESC, t.id DESC")
+    List<TransferHistoryItem> findSent(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT new com.bankoperations.bankoperations.dto.TransferHistoryItem(t.id, t.recipient.id, t.amount, t.timestamp) " +
+            "FROM Transfer t WHERE t.sender.id = :userId " +
+            "AND t.timestamp <= :timestamp AND (t.timestamp < :timestamp OR t.id < :id) " +
+            "ORDER BY t.timestamp DESC, t.id DESC")
+    List<TransferHistoryItem> findSentBefore(@Param("userId") Long userId, @Param("timestamp") Date timestamp,
+                                             @Param("id") long id, Pageable pageable);
+
+    @Query("SELECT new com.bankoperations.bankoperations.dto.TransferHistoryItem(t.id, t.sender.id, t.amount, t.timestamp) " +
+            "FROM Transfer t WHERE t.recipient.id = :userId ORDER BY t.timestamp DESC, t.id DESC")
+    List<TransferHistoryItem> findReceived(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("SELECT new com.bankoperations.bankoperations.dto.TransferHistoryItem(t.id, t.sender.id, t.amount, t.timestamp) " +
+            "FROM Transfer t WHERE t.recipient.id = :userId " +
+            "AND t.timestamp <= :timestamp AND (t.timestamp < :timestamp OR t.id < :id) " +
+            "ORDER BY t.timestamp DESC, t.id DESC")
+    List<TransferHistoryItem> findReceivedBefore(@Param("userId") Long userId, @Param("timestamp") Date timestamp,
+                                                 @Param("id") long id, Pageable pageable);
+
+    /**
+     * Runs on the primary, it replays transfers that may have committed moments ago.
+     */
+    @Transactional
+    @Query("SELECT new com.bankoperations.bankoperations.dto.TransferResponse(t.id, t.sender.id, t.recipient.id, t.amount, t.timestamp) " +
+            "FROM Transfer t WHERE t.id = :id")
+    Optional<TransferResponse> findResponseById(@Param("id") Long id);
 }
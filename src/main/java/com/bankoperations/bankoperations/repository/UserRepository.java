@@ -1,29 +1,81 @@
 package com.bankoperations.bankoperations.repository;
 
+import com.bankoperations.bankoperations.dto.UserResponse;
 import com.bankoperations.bankoperations.entity.User;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.domain.Slice;
-import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserSearchRepository {
     User findByPhoneNumber(String phoneNumber);
 
     User findByEmail(String email);
 
     User findByUsername(String username);
 
-    Slice<Object> findAll(Specification<User> specification, Pageable pageable);
+    /**
+     * {@link #findByUsername} in a read-write transaction, so it runs on the primary even when
+     * read-only transactions go to a replica that has not caught up yet.
+     */
+    @Transactional
+    @Query("SELECT u FROM User u WHERE u.username = :username")
+    User findByUsernameOnPrimary(@Param("username") String username);
+
+    /**
+     * Which of the given values are already in use, one row per conflicting user. A null
+     * parameter never matches.
+     */
+    @Query("SELECT CASE WHEN u.username = :username THEN 'username' " +
+            "WHEN u.email = :email THEN 'email' ELSE 'phoneNumber' END " +
+            "FROM User u WHERE u.username = :username OR u.email = :email OR u.phoneNumber = :phoneNumber")
+    List<String> findConflictingFields(@Param("username") String username,
+                                       @Param("email") String email,
+                                       @Param("phoneNumber") String phoneNumber);
+
+    @Query("SELECT u.id, u.username, u.email, u.phoneNumber FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Object[]> findUniqueKeysAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE User u SET u.password = :password WHERE u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
+
+    @Query("SELECT u.id, u.fullName, u.dateOfBirth FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Object[]> findSearchKeysAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT new com.bankoperations.bankoperations.dto.UserResponse(u.id, u.username, u.fullName, u.email, " +
+            "u.phoneNumber, u.dateOfBirth, a.balance) " +
+            "FROM User u LEFT JOIN u.bankAccount a WHERE u.id > :afterId ORDER BY u.id")
+    List<UserResponse> findResponsesAfter(@Param("afterId") long afterId, Pageable pageable);
 
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT u FROM User u WHERE u.id = :id")
     Optional<User> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * Shared row lock: credits to the same user do not wait for each other, while debits and
+     * ledger compaction of the user's account wait for all of them.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT u FROM User u WHERE u.id = :id")
+    Optional<User> findByIdForShare(@Param("id") Long id);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.bankAccount WHERE u.id IN :ids ORDER BY u.id")
+    List<User> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "SELECT u.id FROM users u WHERE u.id IN " +
+            "(SELECT ba.user_id FROM bank_accounts ba WHERE ba.id > :fromId AND ba.id <= :toId) " +
+            "ORDER BY u.id FOR UPDATE", nativeQuery = true)
+    List<Long> lockByAccountRange(@Param("fromId") long fromId, @Param("toId") long toId);
 }
@@ -0,0 +1,16 @@
+package com.bankoperations.bankoperations.repository;
+
+import com.bankoperations.bankoperations.dto.UserResponse;
+import com.bankoperations.bankoperations.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface UserSearchRepository {
+
+    /**
+     * Users matching the specification, projected to {@link UserResponse} in a single query.
+     */
+    List<UserResponse> findResponses(Specification<User> specification, Pageable pageable);
+}
@@ -0,0 +1,52 @@
+package com.bankoperations.bankoperations.repository;
+
+import com.bankoperations.bankoperations.dto.UserResponse;
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.util.List;
+
+public class UserSearchRepositoryImpl implements UserSearchRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<UserResponse> findResponses(Specification<User> specification, Pageable pageable) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<UserResponse> query = criteriaBuilder.createQuery(UserResponse.class);
+        Root<User> root = query.from(User.class);
+        Join<User, BankAccount> bankAccount = root.join("bankAccount", JoinType.LEFT);
+
+        query.select(criteriaBuilder.construct(UserResponse.class,
+                root.get("id"), root.get("username"), root.get("fullName"), root.get("email"),
+                root.get("phoneNumber"), root.get("dateOfBirth"), bankAccount.get("balance")));
+
+        Predicate predicate = specification.toPredicate(root, query, criteriaBuilder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (pageable.getSort().isSorted()) {
+            query.orderBy(QueryUtils.toOrders(pageable.getSort(), root, criteriaBuilder));
+        }
+
+        TypedQuery<UserResponse> typedQuery = entityManager.createQuery(query);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        return typedQuery.getResultList();
+    }
+}
@@ -0,0 +1,79 @@
+package com.bankoperations.bankoperations.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Optional in-JVM striped locks keyed by account id. When enabled, concurrent transfers on the
+ * same node queue here instead of piling up on database row locks. Stripes are always acquired
+ * in ascending order, so locking several accounts at once cannot deadlock.
+ */
+@Service
+public class AccountLockStripes {
+
+    private static final Lease NO_OP = () -> {
+    };
+
+    private final boolean enabled;
+
+    private final ReentrantLock[] stripes;
+
+    private final int mask;
+
+    @Autowired
+    public AccountLockStripes(@Value("${bank.transfer.jvm-locks.enabled:false}") boolean enabled,
+                              @Value("${bank.transfer.jvm-locks.stripes:1024}") int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1) << 1);
+        this.enabled = enabled;
+        this.stripes = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public Lease lock(Collection<Long> accountIds) {
+        if (!enabled) {
+            return NO_OP;
+        }
+
+        int[] indexes = accountIds.stream()
+                .mapToInt(this::stripeIndex)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        for (int i = 0; i < indexes.length; i++) {
+            try {
+                stripes[indexes[i]].lockInterruptibly();
+            } catch (InterruptedException e) {
+                unlock(Arrays.copyOf(indexes, i));
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for account lock", e);
+            }
+        }
+        return () -> unlock(indexes);
+    }
+
+    private void unlock(int[] indexes) {
+        for (int i = indexes.length - 1; i >= 0; i--) {
+            stripes[indexes[i]].unlock();
+        }
+    }
+
+    private int stripeIndex(Long accountId) {
+        int hash = Long.hashCode(accountId) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    @FunctionalInterface
+    public interface Lease extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,56 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.entity.Transfer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.spi.LoggingEventBuilder;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Audit trail of money movements, written to the {@code AUDIT} logger as key-value events.
+ * Inside a transaction an event is only written once the transaction commits, so retried or
+ * rolled back attempts never show up in the trail. The committing thread only queues the
+ * event; a background writer appends it, blocking the caller rather than dropping events when
+ * the queue is full. See logback-spring.xml for what that does and does not survive.
+ */
+@Service
+public class AuditLog {
+
+    private final static Logger audit = LoggerFactory.getLogger("AUDIT");
+
+    public void transfer(Transfer transfer) {
+        AfterCommit.run(() -> logTransfer("transfer", transfer));
+    }
+
+    public void batchTransfers(List<Transfer> transfers) {
+        if (transfers.isEmpty()) {
+            return;
+        }
+        AfterCommit.run(() -> transfers.forEach(transfer -> logTransfer("batch_transfer", transfer)));
+    }
+
+    public void interestAccrued(long fromId, long toId, int accounts, BigDecimal rate) {
+        AfterCommit.run(() -> audit.atInfo()
+                .setMessage("interest")
+                .addKeyValue("fromAccountId", fromId)
+                .addKeyValue("toAccountId", toId)
+                .addKeyValue("accounts", accounts)
+                .addKeyValue("rate", rate)
+                .log());
+    }
+
+    private static void logTransfer(String event, Transfer transfer) {
+        LoggingEventBuilder builder = audit.atInfo().setMessage(event);
+        if (transfer.getId() != null) {
+            builder = builder.addKeyValue("transferId", transfer.getId());
+        }
+        builder.addKeyValue("senderId", transfer.getSender().getId())
+                .addKeyValue("recipientId", transfer.getRecipient().getId())
+                .addKeyValue("amount", transfer.getAmount())
+                .addKeyValue("timestamp", transfer.getTimestamp().toInstant())
+                .log();
+    }
+}
@@ -2,40 +2,46 @@ package com.bankoperations.bankoperations.service;
 
 import com.bankoperations.bankoperations.dto.JwtAuthenticationResponse;
 import com.bankoperations.bankoperations.dto.SignInRequest;
+import com.bankoperations.bankoperations.exception.LoginThrottledException;
 import lombok.RequiredArgsConstructor;
-import org.apache.log4j.Logger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
 @Service
 @RequiredArgsConstructor
 public class AuthenticationService {
-    @Autowired
-    private final UserService userService;
-
     @Autowired
     private final JwtService jwtService;
 
     @Autowired
     private final AuthenticationManager authenticationManager;
 
-    private final static Logger log = Logger.getLogger(AuthenticationService.class);
+    @Autowired
+    private final PasswordHashingExecutor passwordHashingExecutor;
+
+    @Autowired
+    private final BankMetrics bankMetrics;
+
+    private final static Logger log = LoggerFactory.getLogger(AuthenticationService.class);
 
-    public JwtAuthenticationResponse signIn(SignInRequest request) {
-        authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
-                request.getUsername(),
-                request.getPassword()
-        ));
+    public JwtAuthenticationResponse signIn(SignInRequest request) throws LoginThrottledException {
+        // The BCrypt check runs on the hashing pool; the authenticated principal is the user it loaded.
+        Authentication authentication = passwordHashingExecutor.execute(() -> bankMetrics.recordSignInHash(() ->
+                authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
+                        request.getUsername(),
+                        request.getPassword()
+                ))));
 
-        var user = userService
-                .userDetailsService()
-                .loadUserByUsername(request.getUsername());
+        var user = (UserDetails) authentication.getPrincipal();
 
         var jwt = jwtService.generateToken(user);
-        log.info("User " + request.getUsername() + " sign in");
+        log.info("User {} sign in", request.getUsername());
         return new JwtAuthenticationResponse(jwt);
     }
 }
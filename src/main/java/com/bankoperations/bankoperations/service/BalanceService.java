@@ -0,0 +1,38 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.exception.UserNotFoundException;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+@Service
+@Transactional(readOnly = true)
+public class BalanceService {
+
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+
+    @Autowired
+    private HotAccountService hotAccountService;
+
+    @Autowired
+    private LedgerService ledgerService;
+
+    @Value("${bank.transfer.mode:locking}")
+    private TransferMode transferMode;
+
+    public Money getBalance(Long userId) throws UserNotFoundException {
+        BankAccount bankAccount = bankAccountRepository.findByUserId(userId);
+        if (bankAccount == null) {
+            throw new UserNotFoundException("User not found");
+        }
+        Money balance = transferMode == TransferMode.LEDGER
+                ? ledgerService.currentBalance(bankAccount)
+                : bankAccount.getBalance();
+        return balance.plus(hotAccountService.getSlotBalance(bankAccount));
+    }
+}
@@ -1,45 +1,82 @@
 package com.bankoperations.bankoperations.service;
 
-import com.bankoperations.bankoperations.entity.BankAccount;
-import com.bankoperations.bankoperations.entity.User;
-import com.bankoperations.bankoperations.repository.UserRepository;
-import org.apache.log4j.Logger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.math.BigDecimal;
-import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @EnableScheduling
 public class BalanceUpdateService {
 
     @Autowired
-    private UserRepository userRepository;
+    private InterestAccrualEngine interestAccrualEngine;
 
-    private final static Logger log = Logger.getLogger(BalanceUpdateService.class);
+    @Autowired
+    private InterestPartitionCoordinator interestPartitionCoordinator;
+
+    @Autowired
+    private BankMetrics bankMetrics;
+
+    @Value("${bank.interest.enabled:true}")
+    private boolean enabled = true;
+
+    /**
+     * With leases every node polls for partitions of the current tick; without them each node
+     * credits all accounts once per tick, which is only correct on a single node.
+     */
+    @Value("${bank.interest.lease.enabled:true}")
+    private boolean leaseEnabled = true;
+
+    @Value("${bank.interest.period-ms:60000}")
+    private long periodMs = 60000;
+
+    private volatile long lastTick = Long.MIN_VALUE;
 
-    @Scheduled(fixedRate = 60000)
+    /**
+     * With virtual threads the scheduler may start an execution on a new thread while the
+     * previous one is still running.
+     */
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final static Logger log = LoggerFactory.getLogger(BalanceUpdateService.class);
+
+    @Scheduled(fixedDelayString = "${bank.interest.poll-interval-ms:5000}")
     public void updateBalances() {
-        List<User> users = userRepository.findAll();
-        for (User user : users) {
-            BankAccount bankAccount = user.getBankAccount();
-            BigDecimal currentBalance = bankAccount.getBalance();
-            BigDecimal initialDeposit = user.getInitialDeposit();
-            BigDecimal interestRate = new BigDecimal("1.05");
-            BigDecimal newBalance = currentBalance.multiply(interestRate);
-            BigDecimal maxBalance = initialDeposit.multiply(new BigDecimal("2.07"));
-
-            if (newBalance.compareTo(maxBalance) > 0) {
-                newBalance = maxBalance;
+        if (!enabled) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Previous interest run is still in progress, skipping this one");
+            return;
+        }
+        try {
+            long tick = System.currentTimeMillis() / periodMs;
+            long start = System.nanoTime();
+            long updated;
+            if (leaseEnabled) {
+                updated = interestPartitionCoordinator.run(tick);
+                if (updated < 0) {
+                    return;
+                }
+            } else {
+                if (tick == lastTick) {
+                    return;
+                }
+                lastTick = tick;
+                updated = interestAccrualEngine.accrueAll();
             }
-
-            bankAccount.setBalance(newBalance);
-            log.info("Balance " + bankAccount.getId() + " increased by " + newBalance.subtract(currentBalance));
-            userRepository.save(user);
+            long duration = System.nanoTime() - start;
+            bankMetrics.interestRunFinished(duration, updated);
+            log.info("Interest accrued for {} accounts in {} ms", updated, TimeUnit.NANOSECONDS.toMillis(duration));
+        } finally {
+            running.set(false);
         }
     }
 }
-
@@ -0,0 +1,153 @@
+package com.bankoperations.bankoperations.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the money movement and authentication hot paths. Latency timers publish
+ * percentile histograms, so SLOs can be computed on the Prometheus side across instances.
+ * Connection pool metrics (hikaricp_*) are bound by Spring Boot itself.
+ */
+@Service
+public class BankMetrics {
+
+    public static final String OUTCOME_OK = "ok";
+
+    public static final String OUTCOME_INSUFFICIENT_FUNDS = "insufficient_funds";
+
+    public static final String OUTCOME_NOT_FOUND = "not_found";
+
+    public static final String OUTCOME_INVALID = "invalid";
+
+    public static final String OUTCOME_ERROR = "error";
+
+    public static final String RETRY_DEADLOCK = "deadlock";
+
+    public static final String RETRY_SERIALIZATION_FAILURE = "serialization_failure";
+
+    public static final String RETRY_LOCK_FAILURE = "lock_failure";
+
+    public static final String RETRY_OPTIMISTIC_LOCK = "optimistic_lock";
+
+    private final MeterRegistry registry;
+
+    private final Map<String, Timer> transferTimers = new HashMap<>();
+
+    private final Map<String, Counter> transferRetries = new HashMap<>();
+
+    private final Timer lockWaitTimer;
+
+    private final Timer interestTimer;
+
+    private final Counter interestRows;
+
+    private final AtomicLong interestRowsPerSecond = new AtomicLong();
+
+    private final Timer jwtVerifyTimer;
+
+    private final Timer signInHashTimer;
+
+    private final Counter rejectedRequests;
+
+    @Autowired
+    public BankMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        for (String outcome : new String[]{OUTCOME_OK, OUTCOME_INSUFFICIENT_FUNDS, OUTCOME_NOT_FOUND,
+                OUTCOME_INVALID, OUTCOME_ERROR}) {
+            transferTimers.put(outcome, latencyTimer("bank.transfer", "Transfer latency by outcome")
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+        for (String reason : new String[]{RETRY_DEADLOCK, RETRY_SERIALIZATION_FAILURE, RETRY_LOCK_FAILURE,
+                RETRY_OPTIMISTIC_LOCK}) {
+            transferRetries.put(reason, Counter.builder("bank.transfer.retries")
+                    .description("Transfer transactions rolled back and retried, by reason")
+                    .tag("reason", reason)
+                    .register(registry));
+        }
+        this.lockWaitTimer = latencyTimer("bank.transfer.lock.wait", "Time spent acquiring account row locks")
+                .register(registry);
+        this.interestTimer = Timer.builder("bank.interest.duration")
+                .description("Duration of an interest accrual run")
+                .register(registry);
+        this.interestRows = Counter.builder("bank.interest.rows")
+                .description("Accounts credited with interest")
+                .register(registry);
+        Gauge.builder("bank.interest.rows.per.second", interestRowsPerSecond, AtomicLong::get)
+                .description("Throughput of the last interest accrual run")
+                .register(registry);
+        this.jwtVerifyTimer = latencyTimer("bank.jwt.verify", "JWT signature verification and parsing")
+                .register(registry);
+        this.signInHashTimer = latencyTimer("bank.auth.signin.hash", "Sign-in password check, including BCrypt")
+                .register(registry);
+        this.rejectedRequests = Counter.builder("bank.http.rejected")
+                .description("Requests turned away because the concurrency limit was reached")
+                .register(registry);
+    }
+
+    public Timer.Sample startTransfer() {
+        return Timer.start(registry);
+    }
+
+    public void transferFinished(Timer.Sample sample, String outcome) {
+        sample.stop(transferTimers.get(outcome));
+    }
+
+    public void transferRetried(String reason) {
+        transferRetries.get(reason).increment();
+    }
+
+    public <T> T recordLockWait(Supplier<T> lock) {
+        return lockWaitTimer.record(lock);
+    }
+
+    public void interestRunFinished(long durationNanos, long rows) {
+        interestTimer.record(durationNanos, TimeUnit.NANOSECONDS);
+        interestRows.increment(rows);
+        interestRowsPerSecond.set(durationNanos == 0 ? 0 : rows * TimeUnit.SECONDS.toNanos(1) / durationNanos);
+    }
+
+    public <T> T recordJwtVerify(Supplier<T> verification) {
+        return jwtVerifyTimer.record(verification);
+    }
+
+    public <T> T recordSignInHash(Supplier<T> authentication) {
+        return signInHashTimer.record(authentication);
+    }
+
+    public void monitorConcurrencyLimit(Semaphore permits) {
+        Gauge.builder("bank.http.permits.available", permits, Semaphore::availablePermits)
+                .description("Free request permits")
+                .register(registry);
+        Gauge.builder("bank.http.permits.queued", permits, Semaphore::getQueueLength)
+                .description("Requests waiting for a permit")
+                .register(registry);
+    }
+
+    public void requestRejected() {
+        rejectedRequests.increment();
+    }
+
+    public void monitorCache(Cache<?, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+    }
+
+    private static Timer.Builder latencyTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram();
+    }
+}
@@ -0,0 +1,150 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.entity.BalanceSlot;
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.repository.BalanceSlotRepository;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Striped balances for high fan-in accounts. A striped account keeps part of its balance
+ * in N sub-balance slots: credits land on a random slot with a single atomic UPDATE and never
+ * touch the account row, while debits fold the slots back into the main balance under the
+ * account lock. The balance of a striped account is its main balance plus all slots.
+ */
+@Service
+public class HotAccountService {
+
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+
+    @Autowired
+    private BalanceSlotRepository balanceSlotRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${bank.hot-accounts.user-ids:}")
+    private List<Long> configuredUserIds = List.of();
+
+    @Value("${bank.hot-accounts.slots:16}")
+    private int slotCount = 16;
+
+    private final Set<Long> stripedUserIds = ConcurrentHashMap.newKeySet();
+
+    private final static Logger log = LoggerFactory.getLogger(HotAccountService.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadStripedAccounts() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        for (Long userId : configuredUserIds) {
+            transactionTemplate.executeWithoutResult(status -> enableStriping(userId, slotCount));
+        }
+        stripedUserIds.addAll(bankAccountRepository.findStripedUserIds());
+        log.info("Balance striping is enabled for {} accounts", stripedUserIds.size());
+    }
+
+    public boolean isStriped(Long userId) {
+        return stripedUserIds.contains(userId);
+    }
+
+    /**
+     * Must run in a transaction.
+     */
+    public void enableStriping(Long userId, int slots) {
+        BankAccount bankAccount = bankAccountRepository.findByUserId(userId);
+        if (bankAccount == null) {
+            log.warn("Cannot enable balance striping, no account for user with ID: {}", userId);
+            return;
+        }
+
+        int existing = bankAccount.getSlotCount();
+        for (int slot = existing; slot < slots; slot++) {
+            BalanceSlot balanceSlot = new BalanceSlot();
+            balanceSlot.setBankAccountId(bankAccount.getId());
+            balanceSlot.setSlot(slot);
+            balanceSlot.setBalance(Money.ZERO);
+            balanceSlotRepository.save(balanceSlot);
+        }
+        if (slots > existing) {
+            bankAccount.setSlotCount(slots);
+            log.info("Balance of account {} striped across {} slots", bankAccount.getId(), slots);
+        }
+        stripedUserIds.add(userId);
+    }
+
+    /**
+     * Credits a random slot of a striped account. Must run in a transaction.
+     */
+    public void credit(BankAccount bankAccount, Money amount) {
+        int slot = ThreadLocalRandom.current().nextInt(bankAccount.getSlotCount());
+        if (balanceSlotRepository.credit(bankAccount.getId(), slot, amount.toBigDecimal()) == 0) {
+            throw new IllegalStateException("Balance slot " + slot + " of account " + bankAccount.getId() + " is missing");
+        }
+    }
+
+    /**
+     * Locks all slots of a striped account, as {@link #consolidate} does. Must run in a transaction.
+     */
+    public void lockSlots(BankAccount bankAccount) {
+        if (bankAccount.getSlotCount() > 0) {
+            balanceSlotRepository.findByBankAccountIdForUpdate(bankAccount.getId());
+        }
+    }
+
+    /**
+     * Folds all slots of a striped account into its main balance. The caller must already hold
+     * the account lock, or rely on the version check of the account when it is written; the
+     * slots are locked here so that concurrent credits wait for the fold.
+     */
+    public void consolidate(BankAccount bankAccount) {
+        if (bankAccount.getSlotCount() == 0) {
+            return;
+        }
+
+        Money collected = Money.ZERO;
+        for (BalanceSlot slot : balanceSlotRepository.findByBankAccountIdForUpdate(bankAccount.getId())) {
+            if (!slot.getBalance().isZero()) {
+                collected = collected.plus(slot.getBalance());
+                slot.setBalance(Money.ZERO);
+            }
+        }
+        if (!collected.isZero()) {
+            bankAccount.setBalance(bankAccount.getBalance().plus(collected));
+        }
+    }
+
+    /**
+     * Folds the slots of every striped account with {@code fromId < id <= toId}. Must run in a transaction.
+     */
+    public void consolidateRange(long fromId, long toId) {
+        if (stripedUserIds.isEmpty()) {
+            return;
+        }
+        balanceSlotRepository.lockRange(fromId, toId);
+        bankAccountRepository.consolidateSlots(fromId, toId);
+        balanceSlotRepository.clearRange(fromId, toId);
+    }
+
+    public Money getSlotBalance(BankAccount bankAccount) {
+        if (bankAccount.getSlotCount() == 0) {
+            return Money.ZERO;
+        }
+        return Money.of(balanceSlotRepository.sumBalance(bankAccount.getId()), RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,188 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies interest to all bank accounts with set-based updates, or ledger inserts in ledger mode.
+ * The id space is split into partitions that are processed in parallel, and every
+ * partition is walked in keyset chunks, each chunk being a single UPDATE statement
+ * in its own transaction. Accounts are never loaded into memory.
+ */
+@Service
+public class InterestAccrualEngine {
+
+    public static final BigDecimal INTEREST_RATE = new BigDecimal("1.05");
+
+    public static final BigDecimal MAX_BALANCE_MULTIPLIER = new BigDecimal("2.07");
+
+    private final BankAccountRepository bankAccountRepository;
+
+    private final UserRepository userRepository;
+
+    private final HotAccountService hotAccountService;
+
+    private final LedgerService ledgerService;
+
+    private final AuditLog auditLog;
+
+    private final TransferMode transferMode;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int chunkSize;
+
+    private final int parallelism;
+
+    private final ExecutorService executor;
+
+    private final static Logger log = LoggerFactory.getLogger(InterestAccrualEngine.class);
+
+    @Autowired
+    public InterestAccrualEngine(BankAccountRepository bankAccountRepository,
+                                 UserRepository userRepository,
+                                 HotAccountService hotAccountService,
+                                 LedgerService ledgerService,
+                                 AuditLog auditLog,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${bank.transfer.mode:locking}") TransferMode transferMode,
+                                 @Value("${bank.interest.chunk-size:5000}") int chunkSize,
+                                 @Value("${bank.interest.parallelism:4}") int parallelism) {
+        this.bankAccountRepository = bankAccountRepository;
+        this.userRepository = userRepository;
+        this.hotAccountService = hotAccountService;
+        this.ledgerService = ledgerService;
+        this.auditLog = auditLog;
+        this.transferMode = transferMode;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "interest-accrual-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public long accrueAll() {
+        Long minId = bankAccountRepository.findMinId();
+        Long maxId = bankAccountRepository.findMaxId();
+        if (minId == null || maxId == null) {
+            return 0;
+        }
+
+        long span = maxId - minId + 1;
+        long partitionSize = Math.max(chunkSize, (span + parallelism - 1) / parallelism);
+
+        List<Future<Long>> partitions = new ArrayList<>();
+        for (long from = minId - 1; from < maxId; from += partitionSize) {
+            long fromId = from;
+            long toId = Math.min(maxId, from + partitionSize);
+            partitions.add(executor.submit(() -> accrueRange(fromId, toId)));
+        }
+        return sum(partitions);
+    }
+
+    /**
+     * Runs {@code bank.interest.parallelism} copies of {@code worker} and returns the sum of their
+     * results. Used when partitions are handed out by a coordinator instead of split up front.
+     */
+    public long runWorkers(Callable<Long> worker) {
+        List<Future<Long>> workers = new ArrayList<>();
+        for (int i = 0; i < parallelism; i++) {
+            workers.add(executor.submit(worker));
+        }
+        return sum(workers);
+    }
+
+    private long sum(List<Future<Long>> partitions) {
+        long updated = 0;
+        try {
+            for (Future<Long> partition : partitions) {
+                updated += partition.get();
+            }
+        } catch (InterruptedException e) {
+            partitions.forEach(partition -> partition.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interest accrual was interrupted", e);
+        } catch (ExecutionException e) {
+            partitions.forEach(partition -> partition.cancel(true));
+            throw new IllegalStateException("Interest accrual failed", e.getCause());
+        }
+        return updated;
+    }
+
+    /**
+     * Accrues interest for accounts with {@code fromId < id <= toId}, one keyset chunk per transaction.
+     */
+    public long accrueRange(long fromId, long toId) {
+        return accrueRange(fromId, toId, (chunkFromId, chunkToId) -> {
+        });
+    }
+
+    /**
+     * Like {@link #accrueRange(long, long)}, calling {@code checkpoint} inside the transaction of
+     * every chunk, after the chunk has been credited. An exception from it rolls the chunk back.
+     */
+    public long accrueRange(long fromId, long toId, ChunkCheckpoint checkpoint) {
+        long updated = 0;
+        long cursor = fromId;
+        while (cursor < toId) {
+            Long upper = bankAccountRepository.findChunkUpperBound(cursor, toId, chunkSize);
+            if (upper == null) {
+                break;
+            }
+            updated += accrueChunk(cursor, upper, checkpoint);
+            cursor = upper;
+        }
+        return updated;
+    }
+
+    private int accrueChunk(long fromId, long toId, ChunkCheckpoint checkpoint) {
+        Integer updated = transactionTemplate.execute(status -> {
+            // Users are locked the way transfers lock them, so interest never interleaves with a debit.
+            userRepository.lockByAccountRange(fromId, toId);
+            hotAccountService.consolidateRange(fromId, toId);
+            int credited = transferMode == TransferMode.LEDGER
+                    ? ledgerService.accrueInterest(fromId, toId, INTEREST_RATE, MAX_BALANCE_MULTIPLIER)
+                    : bankAccountRepository.accrueInterest(fromId, toId, INTEREST_RATE, MAX_BALANCE_MULTIPLIER);
+            checkpoint.reached(fromId, toId);
+            return credited;
+        });
+        log.debug("Interest accrued for {} accounts in range ({}, {}]", updated, fromId, toId);
+        if (updated != null && updated > 0) {
+            auditLog.interestAccrued(fromId, toId, updated, INTEREST_RATE);
+        }
+        return updated == null ? 0 : updated;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @FunctionalInterface
+    public interface ChunkCheckpoint {
+        void reached(long fromId, long toId);
+    }
+}
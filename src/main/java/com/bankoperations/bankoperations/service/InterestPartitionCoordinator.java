@@ -0,0 +1,188 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.entity.InterestPartition;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.repository.InterestPartitionRepository;
+import com.bankoperations.bankoperations.repository.InterestTickRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Spreads the interest run of every tick over all nodes sharing the database. The first node
+ * to insert the tick row splits the account id space into partitions; every node then claims
+ * free partitions with a lease and credits them chunk by chunk. Each chunk moves the
+ * partition's checkpoint in its own transaction, and only while the lease is still held, so an
+ * account is credited exactly once per tick. When a node dies its leases expire and another
+ * node resumes the partitions from their checkpoints.
+ */
+@Service
+public class InterestPartitionCoordinator {
+
+    private final InterestAccrualEngine interestAccrualEngine;
+
+    private final BankAccountRepository bankAccountRepository;
+
+    private final InterestTickRepository interestTickRepository;
+
+    private final InterestPartitionRepository interestPartitionRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int partitions;
+
+    private final long leaseMs;
+
+    private final long historyTicks;
+
+    private final String owner;
+
+    private volatile long plannedTick = Long.MIN_VALUE;
+
+    private final static Logger log = LoggerFactory.getLogger(InterestPartitionCoordinator.class);
+
+    @Autowired
+    public InterestPartitionCoordinator(InterestAccrualEngine interestAccrualEngine,
+                                        BankAccountRepository bankAccountRepository,
+                                        InterestTickRepository interestTickRepository,
+                                        InterestPartitionRepository interestPartitionRepository,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${bank.interest.partitions:16}") int partitions,
+                                        @Value("${bank.interest.lease.duration-ms:60000}") long leaseMs,
+                                        @Value("${bank.interest.lease.history-ticks:1440}") long historyTicks,
+                                        @Value("${bank.interest.lease.owner:}") String owner) {
+        this.interestAccrualEngine = interestAccrualEngine;
+        this.bankAccountRepository = bankAccountRepository;
+        this.interestTickRepository = interestTickRepository;
+        this.interestPartitionRepository = interestPartitionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.partitions = partitions;
+        this.leaseMs = leaseMs;
+        this.historyTicks = historyTicks;
+        // A restarted node gets a new identity, so it never mistakes its old leases for its own.
+        this.owner = (StringUtils.hasText(owner) ? owner : ManagementFactory.getRuntimeMXBean().getName())
+                + "/" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Plans {@code tick} unless some node already has, then works on claimable partitions of
+     * this and earlier unfinished ticks until none are left. Returns the number of accounts
+     * credited by this node, or -1 when there was nothing to claim.
+     */
+    public long run(long tick) {
+        plan(tick);
+
+        AtomicBoolean claimedAny = new AtomicBoolean();
+        long updated = interestAccrualEngine.runWorkers(() -> {
+            long credited = 0;
+            InterestPartition partition;
+            while ((partition = claimNext()) != null) {
+                claimedAny.set(true);
+                try {
+                    credited += accruePartition(partition);
+                } catch (LeaseLostException e) {
+                    log.warn("Lease on interest partition {} of tick {} was lost, leaving it to its new owner",
+                            partition.getPartitionNo(), partition.getTick());
+                }
+            }
+            return credited;
+        });
+        return claimedAny.get() ? updated : -1;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    private void plan(long tick) {
+        if (tick <= plannedTick || interestTickRepository.existsById(tick)) {
+            plannedTick = Math.max(plannedTick, tick);
+            return;
+        }
+
+        Long minId = bankAccountRepository.findMinId();
+        Long maxId = bankAccountRepository.findMaxId();
+        if (minId == null || maxId == null) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                interestTickRepository.insert(tick, partitions, owner, new Date());
+                long span = maxId - minId + 1;
+                long partitionSize = (span + partitions - 1) / partitions;
+                int partitionNo = 0;
+                for (long from = minId - 1; from < maxId; from += partitionSize) {
+                    InterestPartition partition = new InterestPartition();
+                    partition.setTick(tick);
+                    partition.setPartitionNo(partitionNo++);
+                    partition.setFromId(from);
+                    partition.setToId(Math.min(maxId, from + partitionSize));
+                    partition.setCheckpointId(from);
+                    interestPartitionRepository.save(partition);
+                }
+                interestPartitionRepository.deleteBefore(tick - historyTicks);
+                interestTickRepository.deleteBefore(tick - historyTicks);
+            });
+            log.info("Interest tick {} planned over accounts ({}, {}] in {} partitions", tick, minId - 1, maxId,
+                    partitions);
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Interest tick {} was already planned by another node", tick);
+        }
+        plannedTick = tick;
+    }
+
+    private InterestPartition claimNext() {
+        return transactionTemplate.execute(status -> {
+            Date now = new Date();
+            // A few candidates, because other nodes are claiming from the head of the same list.
+            for (Long id : interestPartitionRepository.findClaimable(now, PageRequest.of(0, 4))) {
+                if (interestPartitionRepository.claim(id, owner, now, leaseUntil()) == 1) {
+                    return interestPartitionRepository.findById(id).orElseThrow();
+                }
+            }
+            return null;
+        });
+    }
+
+    private long accruePartition(InterestPartition partition) {
+        if (partition.getCheckpointId() > partition.getFromId()) {
+            log.info("Resuming interest partition {} of tick {} after account {}", partition.getPartitionNo(),
+                    partition.getTick(), partition.getCheckpointId());
+        }
+
+        long updated = interestAccrualEngine.accrueRange(partition.getCheckpointId(), partition.getToId(),
+                (fromId, toId) -> {
+                    if (interestPartitionRepository.checkpoint(partition.getId(), owner, fromId, toId, leaseUntil()) != 1) {
+                        throw new LeaseLostException();
+                    }
+                });
+
+        Integer completed = transactionTemplate.execute(status ->
+                interestPartitionRepository.complete(partition.getId(), owner, new Date()));
+        if (completed == null || completed != 1) {
+            throw new LeaseLostException();
+        }
+        return updated;
+    }
+
+    private Date leaseUntil() {
+        return new Date(System.currentTimeMillis() + leaseMs);
+    }
+
+    private static class LeaseLostException extends RuntimeException {
+    }
+}
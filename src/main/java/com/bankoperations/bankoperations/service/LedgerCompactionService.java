@@ -0,0 +1,78 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.repository.LedgerEntryRepository;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Folds ledger entries into the balance snapshots of their accounts, in keyset chunks. Entry
+ * ids are assigned before commit, so a committed entry says nothing about lower ids that are
+ * still in flight. Instead, every transaction that appends entries holds a lock on the users
+ * involved (shared for credits), and a chunk is only folded once the lock on all its users is
+ * granted, at which point every entry of those accounts has committed or rolled back.
+ */
+@Service
+public class LedgerCompactionService {
+
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${bank.transfer.mode:locking}")
+    private TransferMode transferMode;
+
+    @Value("${bank.interest.chunk-size:5000}")
+    private int chunkSize;
+
+    private final static Logger log = LoggerFactory.getLogger(LedgerCompactionService.class);
+
+    @Scheduled(fixedDelayString = "${bank.ledger.compaction-interval-ms:30000}")
+    public void compactScheduled() {
+        if (transferMode == TransferMode.LEDGER) {
+            compact();
+        }
+    }
+
+    public long compact() {
+        Long minId = bankAccountRepository.findMinId();
+        Long maxId = bankAccountRepository.findMaxId();
+        if (minId == null || maxId == null) {
+            return 0;
+        }
+
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long compacted = 0;
+        long cursor = minId - 1;
+        while (cursor < maxId) {
+            Long upper = bankAccountRepository.findChunkUpperBound(cursor, maxId, chunkSize);
+            if (upper == null) {
+                break;
+            }
+            long fromId = cursor;
+            Integer updated = transactionTemplate.execute(status -> {
+                userRepository.lockByAccountRange(fromId, upper);
+                return ledgerEntryRepository.compact(fromId, upper);
+            });
+            compacted += updated == null ? 0 : updated;
+            cursor = upper;
+        }
+        log.info("Ledger snapshots of {} accounts advanced", compacted);
+        return compacted;
+    }
+}
@@ -0,0 +1,60 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.LedgerEntry;
+import com.bankoperations.bankoperations.entity.LedgerEntryType;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.Transfer;
+import com.bankoperations.bankoperations.repository.LedgerEntryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Append-only ledger of money movements. In ledger mode the balance stored on a bank account
+ * is a snapshot that covers every entry up to {@link BankAccount#getLedgerPosition()}; the
+ * current balance is that snapshot plus the entries appended after it. Entries are never
+ * updated, so credits are plain inserts that do not contend on any shared row.
+ * All methods must run in a transaction.
+ */
+@Service
+public class LedgerService {
+
+    @Autowired
+    private LedgerEntryRepository ledgerEntryRepository;
+
+    public Money currentBalance(BankAccount bankAccount) {
+        return Money.of(ledgerEntryRepository.currentBalance(bankAccount.getId()), RoundingMode.HALF_UP);
+    }
+
+    public void recordTransfer(Transfer transfer) {
+        LedgerEntry debit = newEntry(transfer.getSender().getBankAccount().getId(), LedgerEntryType.TRANSFER_DEBIT,
+                transfer.getAmount().negate(), transfer.getTimestamp());
+        LedgerEntry credit = newEntry(transfer.getRecipient().getBankAccount().getId(), LedgerEntryType.TRANSFER_CREDIT,
+                transfer.getAmount(), transfer.getTimestamp());
+        debit.setTransferId(transfer.getId());
+        credit.setTransferId(transfer.getId());
+        ledgerEntryRepository.saveAll(List.of(debit, credit));
+    }
+
+    public void record(BankAccount bankAccount, LedgerEntryType type, Money amount, Date timestamp) {
+        ledgerEntryRepository.save(newEntry(bankAccount.getId(), type, amount, timestamp));
+    }
+
+    public int accrueInterest(long fromId, long toId, BigDecimal rate, BigDecimal cap) {
+        return ledgerEntryRepository.accrueInterest(fromId, toId, rate, cap, new Date());
+    }
+
+    private static LedgerEntry newEntry(Long bankAccountId, LedgerEntryType type, Money amount, Date timestamp) {
+        LedgerEntry entry = new LedgerEntry();
+        entry.setBankAccountId(bankAccountId);
+        entry.setType(type);
+        entry.setAmount(amount);
+        entry.setCreatedAt(timestamp);
+        return entry;
+    }
+}
@@ -0,0 +1,43 @@
+package com.bankoperations.bankoperations.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque continuation token for keyset pagination: the sort field and direction of the
+ * page plus the sort key and id of its last row.
+ */
+@Getter
+@AllArgsConstructor
+public class SearchCursor {
+
+    private final String sortField;
+
+    private final Sort.Direction direction;
+
+    private final long lastId;
+
+    private final String lastValue;
+
+    public String encode() {
+        String raw = sortField + "\n" + direction.name() + "\n" + lastId + "\n" + lastValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\n", 4);
+            if (parts.length != 4) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return new SearchCursor(parts[0], Sort.Direction.valueOf(parts[1]), Long.parseLong(parts[2]), parts[3]);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
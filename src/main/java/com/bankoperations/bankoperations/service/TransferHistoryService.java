@@ -0,0 +1,96 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.dto.TransferHistoryItem;
+import com.bankoperations.bankoperations.dto.TransferHistoryPage;
+import com.bankoperations.bankoperations.repository.TransferRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Sent and received transfers of a user, newest first, in keyset pages over
+ * {@code (timestamp, id)}. Each page is a range scan of the matching composite index on
+ * the transfers table, however deep the page is.
+ */
+@Service
+@Transactional(readOnly = true)
+public class TransferHistoryService {
+
+    private static final String CURSOR_FIELD = "timestamp";
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Value("${bank.transfer.history.max-page-size:100}")
+    private int maxPageSize = 100;
+
+    public TransferHistoryPage getSent(Long userId, int size, String cursor) {
+        Pageable pageable = pageRequest(size);
+        SearchCursor after = decode(cursor);
+        List<TransferHistoryItem> items = after == null
+                ? transferRepository.findSent(userId, pageable)
+                : transferRepository.findSentBefore(userId, lastTimestamp(after),
+                        after.getLastId(), pageable);
+        return toPage(items, pageable);
+    }
+
+    public TransferHistoryPage getReceived(Long userId, int size, String cursor) {
+        Pageable pageable = pageRequest(size);
+        SearchCursor after = decode(cursor);
+        List<TransferHistoryItem> items = after == null
+                ? transferRepository.findReceived(userId, pageable)
+                : transferRepository.findReceivedBefore(userId, lastTimestamp(after),
+                        after.getLastId(), pageable);
+        return toPage(items, pageable);
+    }
+
+    private Pageable pageRequest(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        return PageRequest.of(0, Math.min(size, maxPageSize));
+    }
+
+    private static SearchCursor decode(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        SearchCursor after = SearchCursor.decode(cursor);
+        if (!CURSOR_FIELD.equals(after.getSortField()) || after.getDirection() != Sort.Direction.DESC) {
+            throw new IllegalArgumentException("Cursor does not belong to a transfer history");
+        }
+        lastTimestamp(after);
+        return after;
+    }
+
+    /**
+     * The cursor keeps the full timestamp precision of the database, not only milliseconds.
+     */
+    private static Date lastTimestamp(SearchCursor cursor) {
+        try {
+            return Timestamp.from(Instant.parse(cursor.getLastValue()));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    private static TransferHistoryPage toPage(List<TransferHistoryItem> items, Pageable pageable) {
+        String nextCursor = null;
+        if (items.size() == pageable.getPageSize()) {
+            TransferHistoryItem last = items.get(items.size() - 1);
+            nextCursor = new SearchCursor(CURSOR_FIELD, Sort.Direction.DESC, last.getId(),
+                    last.getTimestamp().toInstant().toString()).encode();
+        }
+        return new TransferHistoryPage(items, nextCursor);
+    }
+}
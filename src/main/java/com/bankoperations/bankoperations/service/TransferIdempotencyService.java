@@ -0,0 +1,196 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.dto.TransferResponse;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.TransferIdempotencyKey;
+import com.bankoperations.bankoperations.entity.TransferIdempotencyKeyId;
+import com.bankoperations.bankoperations.exception.InsufficientBalanceException;
+import com.bankoperations.bankoperations.exception.InvalidTransferException;
+import com.bankoperations.bankoperations.exception.UserNotFoundException;
+import com.bankoperations.bankoperations.repository.TransferIdempotencyKeyRepository;
+import com.bankoperations.bankoperations.repository.TransferRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers with an Idempotency-Key. Keys are scoped by the sender, both in the cache and in
+ * the table, so one sender's key never replays or blocks another sender's transfer. The first
+ * successful transfer for a key is recorded in the transfer_idempotency_keys table and cached; a retry with the same key returns that transfer
+ * without taking any lock. Concurrent duplicates inside this instance wait for the first one
+ * and share its outcome, duplicates on other instances are stopped by the key's primary key.
+ * A failed transfer is not recorded, so retrying it runs it again.
+ */
+@Service
+public class TransferIdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 128;
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TransferRepository transferRepository;
+
+    @Autowired
+    private TransferIdempotencyKeyRepository transferIdempotencyKeyRepository;
+
+    @Value("${bank.transfer.idempotency.retention-hours:24}")
+    private long retentionHours = 24;
+
+    private final Cache<TransferIdempotencyKeyId, TransferResponse> completed;
+
+    private final Map<TransferIdempotencyKeyId, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    private final static Logger log = LoggerFactory.getLogger(TransferIdempotencyService.class);
+
+    @Autowired
+    public TransferIdempotencyService(@Value("${bank.transfer.idempotency.cache.max-size:100000}") long cacheSize,
+                                      @Value("${bank.transfer.idempotency.cache.ttl-seconds:600}") long cacheTtlSeconds,
+                                      BankMetrics bankMetrics) {
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+        bankMetrics.monitorCache(completed, "transfer.idempotency");
+    }
+
+    public TransferResponse transferMoney(String idempotencyKey, Long senderId, Long recipientId, Money amount)
+            throws InsufficientBalanceException, UserNotFoundException, InvalidTransferException {
+
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new InvalidTransferException("Idempotency key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+
+        TransferIdempotencyKeyId id = new TransferIdempotencyKeyId(senderId, idempotencyKey);
+        TransferResponse cached = completed.getIfPresent(id);
+        if (cached != null) {
+            return replay(idempotencyKey, cached, senderId, recipientId, amount);
+        }
+
+        InFlight mine = new InFlight(senderId, recipientId, amount, new CompletableFuture<>());
+        InFlight first = inFlight.putIfAbsent(id, mine);
+        if (first != null) {
+            return awaitFirst(idempotencyKey, first, senderId, recipientId, amount);
+        }
+
+        try {
+            TransferResponse response = execute(id, senderId, recipientId, amount);
+            mine.result().complete(response);
+            return response;
+        } catch (InsufficientBalanceException | UserNotFoundException | InvalidTransferException | RuntimeException e) {
+            mine.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(id, mine);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${bank.transfer.idempotency.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpiredKeys() {
+        Date before = new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours));
+        int purged = transferIdempotencyKeyRepository.deleteCreatedBefore(before);
+        if (purged > 0) {
+            log.info("Purged {} idempotency keys older than {} hours", purged, retentionHours);
+        }
+    }
+
+    private TransferResponse execute(TransferIdempotencyKeyId id, Long senderId, Long recipientId, Money amount)
+            throws InsufficientBalanceException, UserNotFoundException, InvalidTransferException {
+
+        Optional<TransferResponse> stored = findStored(id, recipientId, amount);
+        if (stored.isPresent()) {
+            return stored.get();
+        }
+
+        try {
+            TransferResponse response = TransferResponse.of(
+                    transferService.transferMoney(senderId, recipientId, amount, id.getKey()));
+            completed.put(id, response);
+            return response;
+        } catch (DataIntegrityViolationException e) {
+            // Another instance committed a transfer with this key while ours was waiting for it.
+            return findStored(id, recipientId, amount).orElseThrow(() -> e);
+        }
+    }
+
+    private Optional<TransferResponse> findStored(TransferIdempotencyKeyId id, Long recipientId, Money amount)
+            throws InvalidTransferException {
+        Optional<TransferIdempotencyKey> key = transferIdempotencyKeyRepository.findById(id);
+        if (key.isEmpty() || key.get().getTransferId() == null) {
+            return Optional.empty();
+        }
+
+        TransferResponse response = transferRepository.findResponseById(key.get().getTransferId()).orElse(null);
+        if (response == null) {
+            return Optional.empty();
+        }
+        completed.put(id, response);
+        return Optional.of(replay(id.getKey(), response, id.getSenderId(), recipientId, amount));
+    }
+
+    private TransferResponse awaitFirst(String idempotencyKey, InFlight first, Long senderId, Long recipientId,
+                                        Money amount)
+            throws InsufficientBalanceException, UserNotFoundException, InvalidTransferException {
+
+        checkSameTransfer(first.senderId(), first.recipientId(), first.amount(), senderId, recipientId, amount);
+        try {
+            TransferResponse response = first.result().join();
+            log.info("Duplicate transfer with idempotency key {} joined the one in progress", idempotencyKey);
+            return response;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InsufficientBalanceException insufficientBalance) {
+                throw insufficientBalance;
+            }
+            if (cause instanceof UserNotFoundException userNotFound) {
+                throw userNotFound;
+            }
+            if (cause instanceof InvalidTransferException invalidTransfer) {
+                throw invalidTransfer;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    private TransferResponse replay(String idempotencyKey, TransferResponse response,
+                                    Long senderId, Long recipientId, Money amount) throws InvalidTransferException {
+        checkSameTransfer(response.getSenderId(), response.getRecipientId(), response.getAmount(),
+                senderId, recipientId, amount);
+        log.info("Transfer with idempotency key {} was already completed, returning transfer {}",
+                idempotencyKey, response.getId());
+        return response;
+    }
+
+    private static void checkSameTransfer(Long storedSenderId, Long storedRecipientId, Money storedAmount,
+                                          Long senderId, Long recipientId, Money amount)
+            throws InvalidTransferException {
+        if (!Objects.equals(storedSenderId, senderId) || !Objects.equals(storedRecipientId, recipientId)
+                || storedAmount.compareTo(amount) != 0) {
+            throw new InvalidTransferException("Idempotency key was already used for a different transfer");
+        }
+    }
+
+    private record InFlight(Long senderId, Long recipientId, Money amount,
+                            CompletableFuture<TransferResponse> result) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.bankoperations.bankoperations.service;
+
+/**
+ * How money movements are written, selected with {@code bank.transfer.mode}.
+ */
+public enum TransferMode {
+
+    /**
+     * Balances are updated in place under row locks on both users.
+     */
+    LOCKING,
+
+    /**
+     * Movements are appended to the ledger and balances are materialized by {@link LedgerCompactionService}.
+     */
+    LEDGER,
+
+    /**
+     * Balances are changed by conditional UPDATE statements, the debit only matching while the
+     * balance covers it, without reading or locking the users first. Batches run as in LOCKING.
+     */
+    CONDITIONAL
+}
@@ -0,0 +1,11 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.exception.InsufficientBalanceException;
+import com.bankoperations.bankoperations.exception.InvalidTransferException;
+import com.bankoperations.bankoperations.exception.UserNotFoundException;
+
+@FunctionalInterface
+public interface TransferOperation<T> {
+
+    T execute() throws InsufficientBalanceException, UserNotFoundException, InvalidTransferException;
+}
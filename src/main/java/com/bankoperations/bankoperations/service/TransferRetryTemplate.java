@@ -0,0 +1,154 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.exception.InsufficientBalanceException;
+import com.bankoperations.bankoperations.exception.InvalidTransferException;
+import com.bankoperations.bankoperations.exception.UserNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs a transfer operation in its own transaction and retries it when the database
+ * reports a deadlock, a serialization failure or a stale version. Backoff is exponential with full jitter
+ * and capped, so retry storms on a hot pair of accounts spread out instead of colliding again.
+ */
+@Service
+public class TransferRetryTemplate {
+
+    private static final String SERIALIZATION_FAILURE = "40001";
+
+    private static final String DEADLOCK_DETECTED = "40P01";
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int maxAttempts;
+
+    private final long initialBackoffMs;
+
+    private final long maxBackoffMs;
+
+    private final BankMetrics bankMetrics;
+
+    private final static Logger log = LoggerFactory.getLogger(TransferRetryTemplate.class);
+
+    @Autowired
+    public TransferRetryTemplate(PlatformTransactionManager transactionManager,
+                                 @Value("${bank.transfer.retry.max-attempts:5}") int maxAttempts,
+                                 @Value("${bank.transfer.retry.initial-backoff-ms:10}") long initialBackoffMs,
+                                 @Value("${bank.transfer.retry.max-backoff-ms:200}") long maxBackoffMs,
+                                 BankMetrics bankMetrics) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.bankMetrics = bankMetrics;
+    }
+
+    public <T> T execute(TransferOperation<T> operation) throws InsufficientBalanceException,
+            UserNotFoundException, InvalidTransferException {
+
+        // Retrying inside a caller's transaction is pointless: it is already marked rollback-only.
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return operation.execute();
+        }
+
+        int attempt = 1;
+        while (true) {
+            try {
+                return executeInTransaction(operation);
+            } catch (RuntimeException e) {
+                String reason = retryReason(e);
+                if (attempt >= maxAttempts || reason == null) {
+                    throw e;
+                }
+                bankMetrics.transferRetried(reason);
+                log.warn("Transfer attempt {} failed with {}, retrying", attempt, e.getClass().getSimpleName());
+                backOff(attempt);
+                attempt++;
+            }
+        }
+    }
+
+    private <T> T executeInTransaction(TransferOperation<T> operation) throws InsufficientBalanceException,
+            UserNotFoundException, InvalidTransferException {
+        try {
+            return transactionTemplate.execute(status -> {
+                try {
+                    return operation.execute();
+                } catch (InsufficientBalanceException | UserNotFoundException | InvalidTransferException e) {
+                    throw new OperationFailedException(e);
+                }
+            });
+        } catch (OperationFailedException e) {
+            Exception cause = e.getCause();
+            if (cause instanceof InsufficientBalanceException insufficientBalance) {
+                throw insufficientBalance;
+            }
+            if (cause instanceof UserNotFoundException userNotFound) {
+                throw userNotFound;
+            }
+            throw (InvalidTransferException) cause;
+        }
+    }
+
+    static boolean isRetryable(Throwable e) {
+        return retryReason(e) != null;
+    }
+
+    /**
+     * The {@link BankMetrics} retry reason of a failure, or null when it is not retryable.
+     * The SQL state is preferred because it tells a deadlock from a serialization failure.
+     */
+    static String retryReason(Throwable e) {
+        boolean concurrencyFailure = false;
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException) {
+                return BankMetrics.RETRY_OPTIMISTIC_LOCK;
+            }
+            if (cause instanceof ConcurrencyFailureException) {
+                concurrencyFailure = true;
+            }
+            if (cause instanceof SQLException sqlException) {
+                String sqlState = sqlException.getSQLState();
+                if (DEADLOCK_DETECTED.equals(sqlState)) {
+                    return BankMetrics.RETRY_DEADLOCK;
+                }
+                if (SERIALIZATION_FAILURE.equals(sqlState)) {
+                    return BankMetrics.RETRY_SERIALIZATION_FAILURE;
+                }
+            }
+        }
+        return concurrencyFailure ? BankMetrics.RETRY_LOCK_FAILURE : null;
+    }
+
+    private void backOff(int attempt) {
+        long ceiling = Math.min(maxBackoffMs, initialBackoffMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry transfer", e);
+        }
+    }
+
+    private static class OperationFailedException extends RuntimeException {
+        OperationFailedException(Exception cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized Exception getCause() {
+            return (Exception) super.getCause();
+        }
+    }
+}
@@ -1,23 +1,37 @@
 package com.bankoperations.bankoperations.service;
 
+import com.bankoperations.bankoperations.dto.BatchTransferResponse;
+import com.bankoperations.bankoperations.dto.TransferRequest;
+import com.bankoperations.bankoperations.dto.TransferResult;
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.LedgerEntryType;
+import com.bankoperations.bankoperations.entity.Money;
 import com.bankoperations.bankoperations.entity.Transfer;
 import com.bankoperations.bankoperations.entity.User;
 import com.bankoperations.bankoperations.exception.InsufficientBalanceException;
 import com.bankoperations.bankoperations.exception.InvalidTransferException;
 import com.bankoperations.bankoperations.exception.UserNotFoundException;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.repository.TransferBatchWriter;
+import com.bankoperations.bankoperations.repository.TransferIdempotencyKeyRepository;
 import com.bankoperations.bankoperations.repository.TransferRepository;
 import com.bankoperations.bankoperations.repository.UserRepository;
-import org.apache.log4j.Logger;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
 
 @Service
-@Transactional
 public class TransferService {
 
     @Autowired
@@ -26,18 +40,119 @@ public class TransferService {
     @Autowired
     private UserRepository userRepository;
 
-    private final static Logger log = Logger.getLogger(TransferService.class);
+    @Autowired
+    private BankAccountRepository bankAccountRepository;
+
+    @Autowired
+    private TransferRetryTemplate transferRetryTemplate;
+
+    @Autowired
+    private AccountLockStripes accountLockStripes;
+
+    @Autowired
+    private TransferBatchWriter transferBatchWriter;
+
+    @Autowired
+    private HotAccountService hotAccountService;
+
+    @Autowired
+    private LedgerService ledgerService;
 
-    @Transactional(propagation = Propagation.REQUIRED)
-    public Transfer transferMoney(Long senderId, Long recipientId, BigDecimal amount) throws InsufficientBalanceException,
+    @Autowired
+    private TransferIdempotencyKeyRepository transferIdempotencyKeyRepository;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @Autowired
+    private BankMetrics bankMetrics;
+
+    @Value("${bank.transfer.mode:locking}")
+    private TransferMode transferMode = TransferMode.LOCKING;
+
+    @Value("${bank.transfer.batch.max-size:1000}")
+    private int maxBatchSize = 1000;
+
+    @Value("${bank.transfer.batch.insert-batch-size:500}")
+    private int insertBatchSize = 500;
+
+    private final static Logger log = LoggerFactory.getLogger(TransferService.class);
+
+    public Transfer transferMoney(Long senderId, Long recipientId, Money amount) throws InsufficientBalanceException,
             UserNotFoundException, InvalidTransferException {
+        return transferMoney(senderId, recipientId, amount, null);
+    }
 
-        if (senderId.equals(recipientId)) {
-            throw new InvalidTransferException("You cannot transfer money to your account");
+    /**
+     * With an idempotency key the key is claimed in the transfer transaction, so a second
+     * transfer with the same key fails with a DataIntegrityViolationException instead of
+     * moving money twice. See {@link TransferIdempotencyService} for replaying the first result.
+     */
+    public Transfer transferMoney(Long senderId, Long recipientId, Money amount, String idempotencyKey)
+            throws InsufficientBalanceException, UserNotFoundException, InvalidTransferException {
+
+        Timer.Sample sample = bankMetrics.startTransfer();
+        String outcome = BankMetrics.OUTCOME_ERROR;
+        try {
+            // The conditional debit only guards the balance, so a non-positive amount would credit
+            // the sender out of the recipient's account.
+            if (amount == null || !amount.isPositive()) {
+                throw new InvalidTransferException("Transfer amount must be positive");
+            }
+            if (senderId.equals(recipientId)) {
+                throw new InvalidTransferException("You cannot transfer money to your account");
+            }
+
+            Transfer transfer;
+            try (AccountLockStripes.Lease ignored = accountLockStripes.lock(List.of(senderId, recipientId))) {
+                transfer = transferRetryTemplate.execute(() -> executeTransfer(senderId, recipientId, amount, idempotencyKey));
+            }
+            outcome = BankMetrics.OUTCOME_OK;
+            return transfer;
+        } catch (InsufficientBalanceException e) {
+            outcome = BankMetrics.OUTCOME_INSUFFICIENT_FUNDS;
+            throw e;
+        } catch (UserNotFoundException e) {
+            outcome = BankMetrics.OUTCOME_NOT_FOUND;
+            throw e;
+        } catch (InvalidTransferException e) {
+            outcome = BankMetrics.OUTCOME_INVALID;
+            throw e;
+        } finally {
+            bankMetrics.transferFinished(sample, outcome);
         }
+    }
 
-        User sender = userRepository.findByIdForUpdate(senderId).orElse(null);
-        User recipient = userRepository.findByIdForUpdate(recipientId).orElse(null);
+    private Transfer executeTransfer(Long senderId, Long recipientId, Money amount, String idempotencyKey)
+            throws InsufficientBalanceException, UserNotFoundException {
+
+        // Claimed before any row lock, so a duplicate waits on the key rather than on the accounts.
+        if (idempotencyKey != null) {
+            transferIdempotencyKeyRepository.claim(idempotencyKey, senderId, recipientId, amount.toBigDecimal(), new Date());
+        }
+
+        if (transferMode == TransferMode.CONDITIONAL) {
+            return executeConditionalTransfer(senderId, recipientId, amount, idempotencyKey);
+        }
+
+        boolean ledger = transferMode == TransferMode.LEDGER;
+        boolean stripedRecipient = !ledger && hotAccountService.isStriped(recipientId);
+        User sender;
+        User recipient;
+        if (stripedRecipient) {
+            // Credits land on a balance slot, so the recipient row is never locked.
+            sender = lockUser(senderId);
+            recipient = userRepository.findById(recipientId).orElse(null);
+        } else {
+            // Rows are always locked in ascending id order, so opposite transfers between
+            // the same two accounts wait for each other instead of deadlocking. A ledger credit
+            // is an insert, so the recipient is only locked shared, to hold off compaction.
+            boolean senderFirst = senderId < recipientId;
+            User first = senderFirst ? lockUser(senderId) : lockRecipient(recipientId, ledger);
+            User second = senderFirst ? lockRecipient(recipientId, ledger) : lockUser(senderId);
+            sender = senderFirst ? first : second;
+            recipient = senderFirst ? second : first;
+        }
 
         if (sender == null) {
             throw new UserNotFoundException("Sender not found");
@@ -47,31 +162,229 @@ public class TransferService {
             throw new UserNotFoundException("Recipient not found");
         }
 
-        BigDecimal senderBalance = sender.getBankAccount().getBalance();
-        if (senderBalance.compareTo(amount) < 0) {
+        // Consolidating a striped sender locks all its slots, and the credit then locks a slot of a
+        // striped recipient. Slot sets are taken in ascending account id order, so opposite
+        // transfers between two striped accounts cannot deadlock.
+        if (stripedRecipient && sender.getBankAccount().getSlotCount() > 0
+                && recipient.getBankAccount().getId() < sender.getBankAccount().getId()) {
+            hotAccountService.lockSlots(recipient.getBankAccount());
+        }
+        hotAccountService.consolidate(sender.getBankAccount());
+        Money senderBalance = ledger
+                ? ledgerService.currentBalance(sender.getBankAccount())
+                : sender.getBankAccount().getBalance();
+        if (senderBalance.isLessThan(amount)) {
             throw new InsufficientBalanceException("There are not enough funds in the account to complete the transfer");
         }
 
-        BigDecimal newSenderBalance = senderBalance.subtract(amount);
-        sender.getBankAccount().setBalance(newSenderBalance);
-        userRepository.save(sender);
+        // In ledger mode both sides are written as ledger entries once the transfer has an id.
+        if (!ledger) {
+            Money newSenderBalance = senderBalance.minus(amount);
+            sender.getBankAccount().setBalance(newSenderBalance);
+            userRepository.save(sender);
+
+            if (stripedRecipient) {
+                hotAccountService.credit(recipient.getBankAccount(), amount);
+            } else {
+                Money recipientBalance = recipient.getBankAccount().getBalance();
+                Money newRecipientBalance = recipientBalance.plus(amount);
+                recipient.getBankAccount().setBalance(newRecipientBalance);
+                userRepository.save(recipient);
+            }
+        }
+
+        return recordTransfer(sender, recipient, amount, idempotencyKey);
+    }
+
+    /**
+     * Moves the money with one conditional UPDATE per account and no prior SELECT ... FOR UPDATE,
+     * so each row is locked only from its UPDATE to the commit. A debit that matches no row means
+     * the balance does not cover the amount, unless the sender is striped and its slots still
+     * have to be folded in; that fold writes the account through its version check.
+     */
+    private Transfer executeConditionalTransfer(Long senderId, Long recipientId, Money amount, String idempotencyKey)
+            throws InsufficientBalanceException, UserNotFoundException {
+
+        // Updated in ascending id order, for the same reason rows are locked in that order.
+        if (senderId < recipientId) {
+            debit(senderId, amount);
+            credit(recipientId, amount);
+        } else {
+            credit(recipientId, amount);
+            debit(senderId, amount);
+        }
+
+        return recordTransfer(userRepository.getReferenceById(senderId),
+                userRepository.getReferenceById(recipientId), amount, idempotencyKey);
+    }
+
+    private void debit(Long senderId, Money amount) throws InsufficientBalanceException, UserNotFoundException {
+        if (bankAccountRepository.debit(senderId, amount.toBigDecimal()) > 0) {
+            return;
+        }
+        if (hotAccountService.isStriped(senderId)) {
+            hotAccountService.consolidate(bankAccountRepository.findByUserId(senderId));
+            bankAccountRepository.flush();
+            if (bankAccountRepository.debit(senderId, amount.toBigDecimal()) > 0) {
+                return;
+            }
+        }
+        if (!userRepository.existsById(senderId)) {
+            throw new UserNotFoundException("Sender not found");
+        }
+        throw new InsufficientBalanceException("There are not enough funds in the account to complete the transfer");
+    }
 
-        BigDecimal recipientBalance = recipient.getBankAccount().getBalance();
-        BigDecimal newRecipientBalance = recipientBalance.add(amount);
-        recipient.getBankAccount().setBalance(newRecipientBalance);
-        userRepository.save(recipient);
+    private void credit(Long recipientId, Money amount) throws UserNotFoundException {
+        if (hotAccountService.isStriped(recipientId)) {
+            hotAccountService.credit(bankAccountRepository.findByUserId(recipientId), amount);
+        } else if (bankAccountRepository.credit(recipientId, amount.toBigDecimal()) == 0) {
+            throw new UserNotFoundException("Recipient not found");
+        }
+    }
 
+    private Transfer recordTransfer(User sender, User recipient, Money amount, String idempotencyKey) {
+        boolean ledger = transferMode == TransferMode.LEDGER;
         Transfer transfer = new Transfer();
         transfer.setSender(sender);
         transfer.setRecipient(recipient);
         transfer.setAmount(amount);
         transfer.setTimestamp(new Date());
         transferRepository.save(transfer);
+        if (ledger || idempotencyKey != null) {
+            // The insert is deferred to the flush, and ledger entries and the key reference the row.
+            transferRepository.flush();
+        }
+        if (ledger) {
+            ledgerService.recordTransfer(transfer);
+        }
+        if (idempotencyKey != null) {
+            transferIdempotencyKeyRepository.complete(sender.getId(), idempotencyKey, transfer.getId());
+        }
 
-        log.info("User with ID: " + senderId + " sent " + amount + " to user with ID: " + recipientId);
+        log.info("User with ID: {} sent {} to user with ID: {}", sender.getId(), amount, recipient.getId());
+        auditLog.transfer(transfer);
 
         return transfer;
     }
-}
 
+    public BatchTransferResponse transferBatch(List<TransferRequest> requests) throws InvalidTransferException {
+        if (requests == null || requests.isEmpty()) {
+            throw new InvalidTransferException("Batch must contain at least one transfer");
+        }
+        if (requests.size() > maxBatchSize) {
+            throw new InvalidTransferException("Batch cannot contain more than " + maxBatchSize + " transfers");
+        }
+
+        TreeSet<Long> accountIds = new TreeSet<>();
+        for (TransferRequest request : requests) {
+            if (request != null && request.getSenderId() != null && request.getRecipientId() != null) {
+                accountIds.add(request.getSenderId());
+                accountIds.add(request.getRecipientId());
+            }
+        }
+
+        try (AccountLockStripes.Lease ignored = accountLockStripes.lock(accountIds)) {
+            return transferRetryTemplate.execute(() -> executeBatch(requests, accountIds));
+        } catch (InsufficientBalanceException | UserNotFoundException e) {
+            throw new IllegalStateException("Batch transfers report failures per transfer", e);
+        }
+    }
+
+    private BatchTransferResponse executeBatch(List<TransferRequest> requests, TreeSet<Long> accountIds) {
+        boolean ledger = transferMode == TransferMode.LEDGER;
+
+        // Every distinct account is locked once, in ascending id order, by a single query.
+        Map<Long, User> users = new HashMap<>();
+        Map<Long, Money> initialBalances = new HashMap<>();
+        if (!accountIds.isEmpty()) {
+            for (User user : bankMetrics.recordLockWait(() -> userRepository.findAllByIdForUpdate(accountIds))) {
+                BankAccount bankAccount = user.getBankAccount();
+                hotAccountService.consolidate(bankAccount);
+                users.put(user.getId(), user);
+                initialBalances.put(user.getId(),
+                        ledger ? ledgerService.currentBalance(bankAccount) : bankAccount.getBalance());
+            }
+        }
+        Map<Long, Money> balances = new HashMap<>(initialBalances);
+
+        Date timestamp = new Date();
+        List<Transfer> transfers = new ArrayList<>();
+        List<TransferResult> results = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            TransferRequest request = requests.get(i);
+            String rejection = validateBatchTransfer(request, users, balances);
+            if (rejection != null) {
+                results.add(new TransferResult(i, TransferResult.Status.REJECTED, rejection));
+                continue;
+            }
 
+            balances.merge(request.getSenderId(), request.getAmount().negate(), Money::plus);
+            balances.merge(request.getRecipientId(), request.getAmount(), Money::plus);
+
+            Transfer transfer = new Transfer();
+            transfer.setSender(users.get(request.getSenderId()));
+            transfer.setRecipient(users.get(request.getRecipientId()));
+            transfer.setAmount(request.getAmount());
+            transfer.setTimestamp(timestamp);
+            transfers.add(transfer);
+            results.add(new TransferResult(i, TransferResult.Status.COMPLETED, null));
+        }
+
+        // Only the net delta of each account is written back, one update or ledger entry per account.
+        for (User user : users.values()) {
+            Money initialBalance = initialBalances.get(user.getId());
+            Money balance = balances.get(user.getId());
+            if (Objects.equals(balance, initialBalance)) {
+                continue;
+            }
+            if (ledger) {
+                ledgerService.record(user.getBankAccount(), LedgerEntryType.BATCH_SETTLEMENT,
+                        balance.minus(initialBalance), timestamp);
+            } else {
+                user.getBankAccount().setBalance(balance);
+            }
+        }
+        transferBatchWriter.insertAll(transfers, insertBatchSize);
+        auditLog.batchTransfers(transfers);
+
+        log.info("Batch of {} transfers processed, {} completed", requests.size(), transfers.size());
+
+        return new BatchTransferResponse(transfers.size(), requests.size() - transfers.size(), results);
+    }
+
+    private User lockUser(Long userId) {
+        return bankMetrics.recordLockWait(() -> userRepository.findByIdForUpdate(userId)).orElse(null);
+    }
+
+    private User lockRecipient(Long userId, boolean shared) {
+        if (!shared) {
+            return lockUser(userId);
+        }
+        return bankMetrics.recordLockWait(() -> userRepository.findByIdForShare(userId)).orElse(null);
+    }
+
+    private static String validateBatchTransfer(TransferRequest request, Map<Long, User> users,
+                                                Map<Long, Money> balances) {
+        if (request == null || request.getSenderId() == null || request.getRecipientId() == null
+                || request.getAmount() == null) {
+            return "Sender, recipient and amount are required";
+        }
+        if (!request.getAmount().isPositive()) {
+            return "Transfer amount must be positive";
+        }
+        if (request.getSenderId().equals(request.getRecipientId())) {
+            return "You cannot transfer money to your account";
+        }
+        if (!users.containsKey(request.getSenderId())) {
+            return "Sender not found";
+        }
+        if (!users.containsKey(request.getRecipientId())) {
+            return "Recipient not found";
+        }
+        if (balances.get(request.getSenderId()).isLessThan(request.getAmount())) {
+            return "There are not enough funds in the account to complete the transfer";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,69 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.dto.AuthenticatedUser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process cache of authentication principals keyed by username. Entries are evicted
+ * whenever the contact details of their user change, once the change has committed: evicted
+ * any earlier, a concurrent lookup could cache the old row again for the whole TTL.
+ */
+@Service
+public class UserDetailsCache {
+
+    private final Cache<String, AuthenticatedUser> users;
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    @Autowired
+    public UserDetailsCache(@Value("${bank.auth.user-cache.max-size:10000}") long maxSize,
+                            @Value("${bank.auth.user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.users = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+    }
+
+    public AuthenticatedUser get(String username) {
+        return users.getIfPresent(username);
+    }
+
+    /**
+     * To be taken before the user is read, and passed to {@link #put}.
+     */
+    public long mark() {
+        return evictions.get();
+    }
+
+    /**
+     * Caches a user read after {@code mark} was taken. If any user was evicted since, the row may
+     * predate that change, so it is dropped again.
+     */
+    public void put(AuthenticatedUser user, long mark) {
+        users.put(user.getUsername(), user);
+        if (evictions.get() != mark) {
+            users.invalidate(user.getUsername());
+        }
+    }
+
+    public void evict(String username) {
+        if (username != null) {
+            evictions.incrementAndGet();
+            users.invalidate(username);
+        }
+    }
+
+    /**
+     * Evicts the user when the current transaction commits, or at once outside a transaction.
+     */
+    public void evictAfterCommit(String username) {
+        AfterCommit.run(() -> evict(username));
+    }
+}
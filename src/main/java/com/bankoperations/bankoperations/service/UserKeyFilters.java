@@ -0,0 +1,114 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Bloom filters over the usernames, emails and phone numbers in use. A negative answer means
+ * the value is definitely free and the uniqueness check can skip the database. Until the
+ * filters are built every value is reported as possibly taken. The filters only see users
+ * created or changed by this instance, so the unique indexes on the users table remain the
+ * final guard when several instances share a database.
+ */
+@Service
+public class UserKeyFilters {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${bank.users.key-filters.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${bank.users.key-filters.load-page-size:10000}")
+    private int loadPageSize = 10000;
+
+    private final BloomFilter usernames;
+
+    private final BloomFilter emails;
+
+    private final BloomFilter phoneNumbers;
+
+    private volatile boolean ready;
+
+    private final static Logger log = LoggerFactory.getLogger(UserKeyFilters.class);
+
+    @Autowired
+    public UserKeyFilters(@Value("${bank.users.key-filters.expected-users:1000000}") long expectedUsers,
+                          @Value("${bank.users.key-filters.false-positive-probability:0.01}") double falsePositiveProbability) {
+        this.usernames = new BloomFilter(expectedUsers, falsePositiveProbability);
+        this.emails = new BloomFilter(expectedUsers, falsePositiveProbability);
+        this.phoneNumbers = new BloomFilter(expectedUsers, falsePositiveProbability);
+    }
+
+    /**
+     * Values added while the build is running go into the same filters, so none are lost.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long loaded = 0;
+        long afterId = 0;
+        while (true) {
+            List<Object[]> page = userRepository.findUniqueKeysAfter(afterId, PageRequest.of(0, loadPageSize));
+            for (Object[] row : page) {
+                add((String) row[1], (String) row[2], (String) row[3]);
+            }
+            loaded += page.size();
+            if (page.size() < loadPageSize) {
+                break;
+            }
+            afterId = (Long) page.get(page.size() - 1)[0];
+        }
+        ready = true;
+        log.info("User key filters built for {} users in {} ms", loaded, System.currentTimeMillis() - start);
+    }
+
+    public void add(User user) {
+        add(user.getUsername(), user.getEmail(), user.getPhoneNumber());
+    }
+
+    public boolean mightContainUsername(String username) {
+        return mightContain(usernames, username);
+    }
+
+    public boolean mightContainEmail(String email) {
+        return mightContain(emails, email);
+    }
+
+    public boolean mightContainPhoneNumber(String phoneNumber) {
+        return mightContain(phoneNumbers, phoneNumber);
+    }
+
+    private void add(String username, String email, String phoneNumber) {
+        if (username != null) {
+            usernames.add(username);
+        }
+        if (email != null) {
+            emails.add(email);
+        }
+        if (phoneNumber != null) {
+            phoneNumbers.add(phoneNumber);
+        }
+    }
+
+    private boolean mightContain(BloomFilter filter, String value) {
+        if (value == null) {
+            return false;
+        }
+        return !(enabled && ready) || filter.mightContain(value);
+    }
+}
@@ -0,0 +1,215 @@
+package com.bankoperations.bankoperations.service;
+
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Optional in-process index for the full name prefix and date of birth filters of user search.
+ * Full names are kept in a sorted map, so a prefix is a range scan; dates of birth are kept in
+ * a second sorted map. A search walks one of the two ranges in key order, checks the other
+ * filter per user and stops once the requested page is filled, so only that page is loaded from
+ * the database. A search by name prefix in id order, the default of the search endpoint, walks
+ * the whole prefix range and keeps only the ids up to the end of the page. Matching follows the
+ * database: the prefix is case-sensitive. Names are ordered by code point, as under the C
+ * collation.
+ */
+@Service
+public class UserSearchIndex {
+
+    private static final char KEY_SEPARATOR = '\u0000';
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${bank.search.index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bank.search.index.load-page-size:10000}")
+    private int loadPageSize;
+
+    private final ConcurrentSkipListMap<String, Long> byFullName = new ConcurrentSkipListMap<>();
+
+    private final ConcurrentSkipListMap<Long, NavigableSet<Long>> byDateOfBirth = new ConcurrentSkipListMap<>();
+
+    private final Map<Long, IndexedUser> indexed = new ConcurrentHashMap<>();
+
+    private volatile boolean ready;
+
+    private final static Logger log = LoggerFactory.getLogger(UserSearchIndex.class);
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        if (!enabled) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        long afterId = 0;
+        while (true) {
+            List<Object[]> page = userRepository.findSearchKeysAfter(afterId, PageRequest.of(0, loadPageSize));
+            for (Object[] row : page) {
+                put((Long) row[0], (String) row[1], (Date) row[2]);
+            }
+            if (page.size() < loadPageSize) {
+                break;
+            }
+            afterId = (Long) page.get(page.size() - 1)[0];
+        }
+        ready = true;
+        log.info("User search index built for {} users in {} ms", indexed.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    public void update(User user) {
+        if (enabled) {
+            put(user.getId(), user.getFullName(), user.getDateOfBirth());
+        }
+    }
+
+    /**
+     * Ids of users whose full name starts with {@code fullNamePrefix} and who were born after
+     * {@code bornAfter}, ordered by {@code key} and then id, skipping {@code offset} matches and
+     * returning at most {@code limit}. Either filter may be null, but not the one of the key;
+     * ordering by id needs the name prefix.
+     */
+    public List<Long> search(String fullNamePrefix, Date bornAfter, Key key, boolean descending, long offset,
+                             int limit) {
+        String prefix = fullNamePrefix == null ? null : normalize(fullNamePrefix);
+        Long after = bornAfter == null ? null : bornAfter.getTime();
+        if (key == Key.ID) {
+            return searchById(prefix, after, descending, offset, limit);
+        }
+        Iterable<Long> candidates = key == Key.FULL_NAME
+                ? nameRange(prefix, descending)
+                : dateRange(after, descending);
+
+        List<Long> ids = new ArrayList<>(limit);
+        long skipped = 0;
+        for (Long id : candidates) {
+            if (ids.size() >= limit) {
+                break;
+            }
+            IndexedUser user = indexed.get(id);
+            if (user == null || !user.matches(prefix, after)) {
+                continue;
+            }
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The prefix range is in name order, so every match is visited; a heap holds the first
+     * {@code offset + limit} ids in the requested order and drops the rest as it goes.
+     */
+    private List<Long> searchById(String prefix, Long after, boolean descending, long offset, int limit) {
+        Comparator<Long> order = descending ? Comparator.reverseOrder() : Comparator.naturalOrder();
+        long window = offset + limit;
+        PriorityQueue<Long> kept = new PriorityQueue<>(order.reversed());
+        for (Long id : nameRange(prefix, false)) {
+            IndexedUser user = indexed.get(id);
+            if (user == null || !user.matches(prefix, after)) {
+                continue;
+            }
+            kept.add(id);
+            if (kept.size() > window) {
+                kept.poll();
+            }
+        }
+        if (kept.size() <= offset) {
+            return List.of();
+        }
+        List<Long> ids = new ArrayList<>(kept);
+        ids.sort(order);
+        return new ArrayList<>(ids.subList((int) offset, ids.size()));
+    }
+
+    private Iterable<Long> nameRange(String prefix, boolean descending) {
+        NavigableMap<String, Long> range = byFullName.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        return (descending ? range.descendingMap() : range).values();
+    }
+
+    private Iterable<Long> dateRange(Long after, boolean descending) {
+        NavigableMap<Long, NavigableSet<Long>> range = byDateOfBirth.tailMap(after, false);
+        return () -> (descending ? range.descendingMap() : range).values().stream()
+                .flatMap(ids -> (descending ? ids.descendingSet() : ids).stream())
+                .iterator();
+    }
+
+    private void put(Long id, String fullName, Date dateOfBirth) {
+        IndexedUser entry = new IndexedUser(fullName == null ? null : normalize(fullName), id,
+                dateOfBirth == null ? null : dateOfBirth.getTime());
+        IndexedUser previous = indexed.put(id, entry);
+        if (previous != null) {
+            if (previous.fullName() != null) {
+                byFullName.remove(previous.nameKey());
+            }
+            if (previous.dateOfBirth() != null) {
+                byDateOfBirth.computeIfPresent(previous.dateOfBirth(), (dob, ids) -> {
+                    ids.remove(id);
+                    return ids.isEmpty() ? null : ids;
+                });
+            }
+        }
+        if (entry.fullName() != null) {
+            byFullName.put(entry.nameKey(), id);
+        }
+        if (entry.dateOfBirth() != null) {
+            byDateOfBirth.computeIfAbsent(entry.dateOfBirth(), dob -> new ConcurrentSkipListSet<>()).add(id);
+        }
+    }
+
+    private static String normalize(String value) {
+        return Normalizer.normalize(value, Normalizer.Form.NFC);
+    }
+
+    /**
+     * The key a user search is ordered by when it is answered from the index.
+     */
+    public enum Key {
+        FULL_NAME,
+        DATE_OF_BIRTH,
+        ID
+    }
+
+    private record IndexedUser(String fullName, Long id, Long dateOfBirth) {
+
+        // Ids are appended at a fixed width so users sharing a name stay in id order.
+        String nameKey() {
+            return fullName + KEY_SEPARATOR + String.format("%019d", id);
+        }
+
+        boolean matches(String prefix, Long bornAfter) {
+            return (prefix == null || (fullName != null && fullName.startsWith(prefix)))
+                    && (bornAfter == null || (dateOfBirth != null && dateOfBirth > bornAfter));
+        }
+    }
+}
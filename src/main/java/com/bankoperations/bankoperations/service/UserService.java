@@ -1,31 +1,55 @@
 package com.bankoperations.bankoperations.service;
 
+import com.bankoperations.bankoperations.dto.AuthenticatedUser;
+import com.bankoperations.bankoperations.dto.UserResponse;
+import com.bankoperations.bankoperations.dto.UserSearchPage;
 import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.Money;
 import com.bankoperations.bankoperations.entity.User;
 import com.bankoperations.bankoperations.exception.*;
 import com.bankoperations.bankoperations.dto.UpdateEmailRequest;
 import com.bankoperations.bankoperations.dto.UpdatePhoneRequest;
 import com.bankoperations.bankoperations.repository.BankAccountRepository;
 import com.bankoperations.bankoperations.repository.UserRepository;
-import org.apache.log4j.Logger;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @Transactional
-public class UserService {
+public class UserService implements UserDetailsPasswordService {
 
     @Autowired
     private PasswordEncoder passwordEncoder;
@@ -36,8 +60,32 @@ public class UserService {
     @Autowired
     private BankAccountRepository bankAccountRepository;
 
-    private final static Logger log = Logger.getLogger(UserService.class);
+    @Autowired
+    private UserDetailsCache userDetailsCache;
+
+    @Autowired
+    private UserSearchIndex userSearchIndex;
+
+    @Autowired
+    private UserKeyFilters userKeyFilters;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${bank.export.page-size:1000}")
+    private int exportPageSize;
+
+    @Value("${bank.search.max-page-size:100}")
+    private int maxSearchPageSize = 100;
+
+    private static final Set<String> SEEK_SORT_FIELDS = Set.of("id", "fullName", "username", "dateOfBirth");
 
+    private final static Logger log = LoggerFactory.getLogger(UserService.class);
+
+    @Transactional(rollbackFor = InvalidUserException.class)
     public User createUser(User request) throws InvalidUserException {
 
         try {
@@ -65,8 +113,12 @@ public class UserService {
 
         user = userRepository.save(user);
         bankAccountRepository.save(bankAccount);
+        // Both inserts go out together here, so a taken username fails inside this call.
+        flushUniqueKeys();
+        user.setBankAccount(bankAccount);
+        indexAfterCommit(user);
 
-        log.info("User with username: " + user.getUsername() + " was created");
+        log.info("User with username: {} was created", user.getUsername());
 
         return user;
 
@@ -79,78 +131,187 @@ public class UserService {
             throw new InvalidUserException(e.getMessage());
         }
 
+        checkConflicts(findConflictingFields(user));
+    }
+
+    private static void checkConflicts(List<String> conflicts) throws InvalidUserException {
         try {
-            validateUsername(user);
+            validateUsername(conflicts);
         } catch (InvalidUsernameException e) {
             throw new InvalidUserException(e.getMessage());
         }
 
         try {
-            validateEmail(user);
+            validateEmail(conflicts);
         } catch (InvalidEmailException e) {
             throw new InvalidUserException(e.getMessage());
         }
 
         try {
-            validatePhoneNumber(user);
+            validatePhoneNumber(conflicts);
         } catch (InvalidPhoneNumberException e) {
             throw new InvalidUserException(e.getMessage());
         }
     }
 
-    public static void validateInitialDeposit(User user) throws InvalidInitialDepositException {
-        BigDecimal balance = user.getInitialDeposit();
-        if (balance.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new InvalidInitialDepositException("Initial deposit can't be 0 or less");
+    private static void validateUsername(List<String> conflicts) throws InvalidUsernameException {
+        if (conflicts.contains("username")) {
+            throw new InvalidUsernameException("This username is already in use");
         }
     }
 
-    public void validateUsername(User user) throws InvalidUsernameException {
-        User checkUsername = userRepository.findByUsername(user.getUsername());
-        if (checkUsername != null) {
-            throw new InvalidUsernameException("This username is already in use");
+    private static void validateEmail(List<String> conflicts) throws InvalidEmailException {
+        if (conflicts.contains("email")) {
+            throw new InvalidEmailException("This email is already in use");
         }
     }
 
-    public void validatePhoneNumber(User user) throws InvalidPhoneNumberException {
-        User checkPhoneNumber = userRepository.findByPhoneNumber(user.getPhoneNumber());
-        if (checkPhoneNumber != null) {
+    private static void validatePhoneNumber(List<String> conflicts) throws InvalidPhoneNumberException {
+        if (conflicts.contains("phoneNumber")) {
             throw new InvalidPhoneNumberException("This phone number is already in use");
         }
     }
 
-    public void validateEmail(User user) throws InvalidEmailException {
-        User checkEmail = userRepository.findByEmail(user.getEmail());
-        if (checkEmail != null) {
-            throw new InvalidEmailException("This email is already in use");
+    /**
+     * The user field behind a violated unique index, matched by the index names that the entity
+     * and schema-changes.sql share, or null for any other violation.
+     */
+    private static String violatedField(DataIntegrityViolationException e) {
+        if (!(e.getCause() instanceof ConstraintViolationException violation) || violation.getConstraintName() == null) {
+            return null;
+        }
+        String constraintName = violation.getConstraintName().toLowerCase();
+        if (constraintName.contains("uk_users_username")) {
+            return "username";
+        }
+        if (constraintName.contains("uk_users_email")) {
+            return "email";
+        }
+        if (constraintName.contains("uk_users_phone_number")) {
+            return "phoneNumber";
         }
+        return null;
     }
 
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    public static void validateInitialDeposit(User user) throws InvalidInitialDepositException {
+        Money balance = user.getInitialDeposit();
+        if (balance == null || !balance.isPositive()) {
+            throw new InvalidInitialDepositException("Initial deposit can't be 0 or less");
+        }
+    }
+
+    private List<String> findConflictingFields(User user) {
+        return findConflictingFields(user.getUsername(), user.getEmail(), user.getPhoneNumber());
+    }
+
+    /**
+     * Checks username, email and phone number with a single query. Values that the key filters
+     * rule out are left out of the query; when all of them are ruled out, no query is run. A
+     * null value is not checked.
+     */
+    private List<String> findConflictingFields(String username, String email, String phoneNumber) {
+        username = userKeyFilters.mightContainUsername(username) ? username : null;
+        email = userKeyFilters.mightContainEmail(email) ? email : null;
+        phoneNumber = userKeyFilters.mightContainPhoneNumber(phoneNumber) ? phoneNumber : null;
+        if (username == null && email == null && phoneNumber == null) {
+            return List.of();
+        }
+        return userRepository.findConflictingFields(username, email, phoneNumber);
+    }
+
+    /**
+     * Sends the pending user writes to the database. The key filters only see this instance's
+     * writes, so a value taken elsewhere can get past the conflict check; its unique index
+     * violation is reported like the check would have reported it.
+     */
+    private void flushUniqueKeys() throws InvalidUserException {
+        try {
+            userRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            String field = violatedField(e);
+            if (field != null) {
+                checkConflicts(List.of(field));
+            }
+            throw e;
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public List<UserResponse> getAllUsers() {
+        return userRepository.findResponses(Specification.where(null), Pageable.unpaged());
+    }
+
+    /**
+     * Writes every user as newline-delimited JSON. Users are read in keyset pages of
+     * {@link UserResponse} projections, which are not managed by the persistence context, so
+     * memory use does not grow with the number of users. Each page is read in its own short
+     * read-only transaction and written after it ends, so a slow client holds no connection.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long exportUsers(OutputStream outputStream) throws IOException {
+        TransactionTemplate readPage = new TransactionTemplate(transactionManager);
+        readPage.setReadOnly(true);
+        long exported = 0;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+            long afterId = 0;
+            while (true) {
+                long pageAfterId = afterId;
+                List<UserResponse> page = readPage.execute(status ->
+                        userRepository.findResponsesAfter(pageAfterId, PageRequest.of(0, exportPageSize)));
+                for (UserResponse user : page) {
+                    generator.writeObject(user);
+                }
+                exported += page.size();
+                generator.flush();
+                if (page.size() < exportPageSize) {
+                    break;
+                }
+                afterId = page.get(page.size() - 1).getId();
+            }
+            // Every record ends with a newline; an empty export is an empty body, not a blank line.
+            if (exported > 0) {
+                generator.writeRaw('\n');
+            }
+        }
+        log.info("Exported {} users", exported);
+        return exported;
     }
 
-    public User updateEmail(Long userId, UpdateEmailRequest request) throws UserNotFoundException {
+    @Transactional(rollbackFor = InvalidUserException.class)
+    public User updateEmail(Long userId, UpdateEmailRequest request) throws UserNotFoundException, InvalidUserException {
         User user = userRepository.findById(userId).orElse(null);
         if (user != null) {
-            if (request.getNewEmail() != null) {
+            log.info("User with ID: {} update email {} to {}", userId, user.getEmail(), request.getNewEmail());
+            if (request.getNewEmail() != null && !request.getNewEmail().equals(user.getEmail())) {
+                checkConflicts(findConflictingFields(null, request.getNewEmail(), null));
                 user.setEmail(request.getNewEmail());
             }
-            log.info("User with ID:" + userId + " update email " + user.getEmail() + " to " + request.getNewEmail());
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            flushUniqueKeys();
+            indexAfterCommit(saved);
+            userDetailsCache.evictAfterCommit(user.getUsername());
+            return saved;
         } else {
             throw new UserNotFoundException("User not found");
         }
     }
 
-    public User updatePhoneNumber(Long userId, UpdatePhoneRequest request) throws UserNotFoundException {
+    @Transactional(rollbackFor = InvalidUserException.class)
+    public User updatePhoneNumber(Long userId, UpdatePhoneRequest request) throws UserNotFoundException, InvalidUserException {
         User user = userRepository.findById(userId).orElse(null);
         if (user != null) {
-            if (request.getNewPhoneNumber() != null) {
+            log.info("User with ID: {} update phone {} to {}", userId, user.getPhoneNumber(), request.getNewPhoneNumber());
+            if (request.getNewPhoneNumber() != null && !request.getNewPhoneNumber().equals(user.getPhoneNumber())) {
+                checkConflicts(findConflictingFields(null, null, request.getNewPhoneNumber()));
                 user.setPhoneNumber(request.getNewPhoneNumber());
             }
-            log.info("User with ID:" + userId + " update phone " + user.getPhoneNumber() + " to " + request.getNewPhoneNumber());
-            return userRepository.save(user);
+            User saved = userRepository.save(user);
+            flushUniqueKeys();
+            indexAfterCommit(saved);
+            userDetailsCache.evictAfterCommit(user.getUsername());
+            return saved;
         } else {
             throw new UserNotFoundException("User not found");
         }
@@ -161,8 +322,10 @@ public class UserService {
         if (user != null) {
             if (user.getPhoneNumber() != null) {
                 user.setEmail(null);
-                log.info("User with ID:" + userId + " delete email");
+                log.info("User with ID: {} delete email", userId);
                 userRepository.save(user);
+                AfterCommit.run(() -> userSearchIndex.update(user));
+                userDetailsCache.evictAfterCommit(user.getUsername());
                 return true;
             } else {
                 throw new NoContactInfoException("You can't delete all contact info");
@@ -177,8 +340,10 @@ public class UserService {
         if (user != null) {
             if (user.getEmail() != null) {
                 user.setPhoneNumber(null);
-                log.info("User with ID:" + userId + " delete email");
+                log.info("User with ID: {} delete phone number", userId);
                 userRepository.save(user);
+                AfterCommit.run(() -> userSearchIndex.update(user));
+                userDetailsCache.evictAfterCommit(user.getUsername());
                 return true;
             } else {
                 throw new NoContactInfoException("You can't delete all contact info");
@@ -188,7 +353,129 @@ public class UserService {
         }
     }
 
-    public List<Object> searchUsers(String fullName, String email, String phoneNumber, Date dateOfBirth, Pageable pageable) {
+    @Transactional(readOnly = true)
+    public List<UserResponse> searchUsers(String fullName, String email, String phoneNumber, Date dateOfBirth, Pageable pageable) {
+        UserSearchIndex.Key indexKey = searchIndexKey(fullName, email, phoneNumber, dateOfBirth, pageable);
+        if (indexKey != null) {
+            return searchUsersInIndex(fullName, dateOfBirth, indexKey, pageable);
+        }
+
+        Specification<User> specification = searchSpecification(fullName, email, phoneNumber, dateOfBirth);
+        return userRepository.findResponses(specification, pageable);
+    }
+
+    /**
+     * Keyset variant of {@link #searchUsers}: instead of skipping {@code page * size} rows, the
+     * query seeks past the last row of the previous page, so every page costs the same. Pages
+     * larger than {@code bank.search.max-page-size} are cut down to it.
+     */
+    @Transactional(readOnly = true)
+    public UserSearchPage searchUsersAfter(String fullName, String email, String phoneNumber, Date dateOfBirth,
+                                           String sortField, Sort.Direction direction, int size, String cursor) {
+        if (!SEEK_SORT_FIELDS.contains(sortField)) {
+            throw new IllegalArgumentException("Cannot sort by " + sortField);
+        }
+        if (size <= 0) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        size = Math.min(size, maxSearchPageSize);
+
+        Specification<User> specification = searchSpecification(fullName, email, phoneNumber, dateOfBirth);
+        if (cursor != null) {
+            SearchCursor after = SearchCursor.decode(cursor);
+            if (!after.getSortField().equals(sortField) || after.getDirection() != direction) {
+                throw new IllegalArgumentException("Cursor does not match the requested sort order");
+            }
+            specification = specification.and(seekAfter(after));
+        }
+
+        Sort sort = Sort.by(direction, sortField);
+        if (!"id".equals(sortField)) {
+            sort = sort.and(Sort.by(direction, "id"));
+        }
+
+        List<UserResponse> users = userRepository.findResponses(specification, PageRequest.of(0, size + 1, sort));
+        String nextCursor = null;
+        if (users.size() > size) {
+            users = users.subList(0, size);
+            UserResponse last = users.get(users.size() - 1);
+            nextCursor = new SearchCursor(sortField, direction, last.getId(), sortValue(last, sortField)).encode();
+        }
+        return new UserSearchPage(users, nextCursor);
+    }
+
+    /**
+     * The in-memory indexes mirror committed rows only: a rolled back change must not show up in
+     * search results or in the key filters.
+     */
+    private void indexAfterCommit(User user) {
+        AfterCommit.run(() -> {
+            userSearchIndex.update(user);
+            userKeyFilters.add(user);
+        });
+    }
+
+    /**
+     * The index answers a search when it is ordered by the key of one of its two ranges: by full
+     * name for a name prefix, or by date of birth for a date filter, optionally followed by id in
+     * the same direction. A name prefix search that is unsorted or sorted by id alone, as the
+     * endpoint's default is, is answered in id order.
+     */
+    private UserSearchIndex.Key searchIndexKey(String fullName, String email, String phoneNumber, Date dateOfBirth,
+                                               Pageable pageable) {
+        if (!userSearchIndex.isReady() || email != null || phoneNumber != null) {
+            return null;
+        }
+        List<Sort.Order> orders = pageable.getSort().toList();
+        if (orders.isEmpty() || (orders.size() == 1 && "id".equals(orders.get(0).getProperty()))) {
+            return fullName != null ? UserSearchIndex.Key.ID : null;
+        }
+        if (orders.size() > 2) {
+            return null;
+        }
+        Sort.Order first = orders.get(0);
+        if (orders.size() == 2 && !(orders.get(1).getProperty().equals("id")
+                && orders.get(1).getDirection() == first.getDirection())) {
+            return null;
+        }
+        if ("fullName".equals(first.getProperty()) && fullName != null) {
+            return UserSearchIndex.Key.FULL_NAME;
+        }
+        if ("dateOfBirth".equals(first.getProperty()) && dateOfBirth != null) {
+            return UserSearchIndex.Key.DATE_OF_BIRTH;
+        }
+        return null;
+    }
+
+    /**
+     * Resolves the ids of the requested page in memory and loads only those users.
+     */
+    private List<UserResponse> searchUsersInIndex(String fullName, Date dateOfBirth, UserSearchIndex.Key key,
+                                                  Pageable pageable) {
+        boolean descending = pageable.getSort().isSorted() && pageable.getSort().toList().get(0).isDescending();
+        List<Long> pageIds = userSearchIndex.search(fullName, dateOfBirth, key, descending, pageable.getOffset(),
+                pageable.getPageSize());
+        if (pageIds.isEmpty()) {
+            return List.of();
+        }
+
+        Specification<User> byIds = (root, query, criteriaBuilder) -> root.get("id").in(pageIds);
+        Map<Long, UserResponse> users = new HashMap<>();
+        for (UserResponse user : userRepository.findResponses(byIds, Pageable.unpaged())) {
+            users.put(user.getId(), user);
+        }
+        List<UserResponse> page = new ArrayList<>(pageIds.size());
+        for (Long id : pageIds) {
+            UserResponse user = users.get(id);
+            if (user != null) {
+                page.add(user);
+            }
+        }
+        return page;
+    }
+
+    private static Specification<User> searchSpecification(String fullName, String email, String phoneNumber,
+                                                           Date dateOfBirth) {
         Specification<User> specification = Specification.where(null);
 
         if (fullName != null) {
@@ -211,18 +498,69 @@ public class UserService {
                     criteriaBuilder.greaterThan(root.get("dateOfBirth"), dateOfBirth));
         }
 
-        return userRepository.findAll(specification, pageable).getContent();
+        return specification;
+    }
+
+    private static Specification<User> seekAfter(SearchCursor cursor) {
+        boolean ascending = cursor.getDirection().isAscending();
+        return (root, query, criteriaBuilder) -> {
+            Path<Long> id = root.get("id");
+            Predicate idAfter = ascending
+                    ? criteriaBuilder.greaterThan(id, cursor.getLastId())
+                    : criteriaBuilder.lessThan(id, cursor.getLastId());
+            if ("id".equals(cursor.getSortField())) {
+                return idAfter;
+            }
+
+            // The first conjunct is implied by the second, but only it can start the index range;
+            // an OR alone leaves the database scanning every row before the cursor.
+            Path<Comparable<Object>> key = root.get(cursor.getSortField());
+            Comparable<Object> value = parseSortValue(cursor.getSortField(), cursor.getLastValue());
+            Predicate keyFrom = ascending
+                    ? criteriaBuilder.greaterThanOrEqualTo(key, value)
+                    : criteriaBuilder.lessThanOrEqualTo(key, value);
+            Predicate keyAfter = ascending
+                    ? criteriaBuilder.greaterThan(key, value)
+                    : criteriaBuilder.lessThan(key, value);
+            return criteriaBuilder.and(keyFrom, criteriaBuilder.or(keyAfter, idAfter));
+        };
+    }
+
+    private static String sortValue(UserResponse user, String sortField) {
+        return switch (sortField) {
+            case "fullName" -> user.getFullName();
+            case "username" -> user.getUsername();
+            case "dateOfBirth" -> String.valueOf(user.getDateOfBirth().getTime());
+            default -> String.valueOf(user.getId());
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparable<Object> parseSortValue(String sortField, String value) {
+        Comparable<?> parsed = switch (sortField) {
+            case "dateOfBirth" -> new Date(Long.parseLong(value));
+            default -> value;
+        };
+        return (Comparable<Object>) parsed;
     }
 
     public UserDetailsService userDetailsService() {
         return new UserDetailsService() {
             @Override
             public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-                try {
-                    return getByUsername(username);
-                } catch (UserNotFoundException e) {
-                    throw new UsernameNotFoundException("User not found", e);
+                AuthenticatedUser cached = userDetailsCache.get(username);
+                if (cached != null) {
+                    return cached;
+                }
+                // Cache fills read the primary: a lagging replica would cache a stale row for the whole TTL.
+                long mark = userDetailsCache.mark();
+                User user = userRepository.findByUsernameOnPrimary(username);
+                if (user == null) {
+                    throw new UsernameNotFoundException("User not found");
                 }
+                AuthenticatedUser principal = AuthenticatedUser.of(user);
+                userDetailsCache.put(principal, mark);
+                return principal;
             }
         };
     }
@@ -231,6 +569,10 @@ public class UserService {
     public User getByUsername(String username) throws UserNotFoundException {
 
         User user = userRepository.findByUsername(username);
+        if (user == null) {
+            // Outside a transaction the lookup may run on a replica that has not seen a new user yet.
+            user = userRepository.findByUsernameOnPrimary(username);
+        }
 
         if (user == null) {
             throw new UserNotFoundException("User not found");
@@ -238,6 +580,18 @@ public class UserService {
         return user;
     }
 
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        userDetailsCache.evictAfterCommit(user.getUsername());
+        log.info("Password hash of user {} was upgraded", user.getUsername());
+        if (user instanceof AuthenticatedUser authenticatedUser) {
+            return new AuthenticatedUser(authenticatedUser.getId(), authenticatedUser.getUsername(),
+                    authenticatedUser.getEmail(), newPassword);
+        }
+        return userDetailsService().loadUserByUsername(user.getUsername());
+    }
+
     public User getCurrentUser() throws UserNotFoundException {
         String username = SecurityContextHolder.getContext().getAuthentication().getName();
         return getByUsername(username);
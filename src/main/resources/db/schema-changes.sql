@@ -0,0 +1,119 @@
+-- Schema changes that have to be applied to existing databases (spring.jpa.hibernate.ddl-auto=none).
+
+-- Hot-account balance striping
+ALTER TABLE bank_accounts ADD COLUMN slot_count INTEGER NOT NULL DEFAULT 0;
+
+CREATE TABLE bank_account_slots (
+    id              BIGSERIAL PRIMARY KEY,
+    bank_account_id BIGINT         NOT NULL REFERENCES bank_accounts (id),
+    slot            INTEGER        NOT NULL,
+    balance         NUMERIC        NOT NULL DEFAULT 0,
+    CONSTRAINT uk_bank_account_slots_account_slot UNIQUE (bank_account_id, slot)
+);
+
+-- Append-only ledger (bank.transfer.mode=ledger)
+ALTER TABLE bank_accounts ADD COLUMN ledger_position BIGINT NOT NULL DEFAULT 0;
+
+CREATE TABLE ledger_entries (
+    id              BIGSERIAL PRIMARY KEY,
+    bank_account_id BIGINT      NOT NULL REFERENCES bank_accounts (id),
+    transfer_id     BIGINT      REFERENCES transfers (id),
+    entry_type      VARCHAR(32) NOT NULL,
+    amount          NUMERIC     NOT NULL,
+    created_at      TIMESTAMP   NOT NULL
+);
+
+CREATE INDEX idx_ledger_entries_account_id ON ledger_entries (bank_account_id, id);
+CREATE INDEX idx_ledger_entries_created_at ON ledger_entries (created_at);
+
+-- Keyset search (/api/search/cursor)
+CREATE INDEX idx_users_full_name_id ON users (full_name text_pattern_ops, id);
+CREATE INDEX idx_users_date_of_birth_id ON users (date_of_birth, id);
+
+-- Unique usernames, emails and phone numbers. The uniqueness check on user creation may skip
+-- the database when the in-memory key filters rule a value out, so these indexes are the
+-- final guard. Duplicates already present have to be resolved before they can be created.
+CREATE UNIQUE INDEX uk_users_username ON users (username);
+CREATE UNIQUE INDEX uk_users_email ON users (email);
+CREATE UNIQUE INDEX uk_users_phone_number ON users (phone_number);
+
+-- Transfer history (/api/transfers/{userId}/sent, /received). The included columns make the
+-- history queries index-only scans.
+CREATE INDEX idx_transfers_sender_timestamp_id ON transfers (sender_id, timestamp DESC, id DESC)
+    INCLUDE (recipient_id, amount);
+CREATE INDEX idx_transfers_recipient_timestamp_id ON transfers (recipient_id, timestamp DESC, id DESC)
+    INCLUDE (sender_id, amount);
+
+-- Idempotency keys of money transfers (Idempotency-Key header on /api/sendMoney). A key is
+-- inserted at the start of the transfer transaction, so the primary key serializes duplicates
+-- across instances. Keys older than bank.transfer.idempotency.retention-hours are purged.
+CREATE TABLE transfer_idempotency_keys (
+    idempotency_key VARCHAR(128) PRIMARY KEY,
+    sender_id       BIGINT       NOT NULL,
+    recipient_id    BIGINT       NOT NULL,
+    amount          NUMERIC      NOT NULL,
+    transfer_id     BIGINT       REFERENCES transfers (id),
+    created_at      TIMESTAMP    NOT NULL
+);
+
+CREATE INDEX idx_transfer_idempotency_keys_created_at ON transfer_idempotency_keys (created_at);
+
+-- Interest ticks and their partitions, leased by the nodes running the interest job. A
+-- partition's checkpoint_id moves forward in the same transaction as the interest credit, so
+-- a node taking over an expired lease resumes exactly where the previous owner stopped.
+CREATE TABLE interest_ticks (
+    tick       BIGINT PRIMARY KEY,
+    partitions INT          NOT NULL,
+    planned_by VARCHAR(128) NOT NULL,
+    planned_at TIMESTAMP    NOT NULL
+);
+
+CREATE TABLE interest_partitions (
+    id            BIGSERIAL PRIMARY KEY,
+    tick          BIGINT       NOT NULL,
+    partition_no  INT          NOT NULL,
+    from_id       BIGINT       NOT NULL,
+    to_id         BIGINT       NOT NULL,
+    checkpoint_id BIGINT       NOT NULL,
+    owner         VARCHAR(128),
+    lease_until   TIMESTAMP,
+    completed_at  TIMESTAMP,
+    UNIQUE (tick, partition_no)
+);
+
+CREATE INDEX idx_interest_partitions_open ON interest_partitions (tick, partition_no) WHERE completed_at IS NULL;
+
+-- Money columns narrowed to two decimals, the scale of the Money type. Existing values with
+-- more decimals are rounded half up by the cast.
+ALTER TABLE bank_accounts ALTER COLUMN balance TYPE NUMERIC(19, 2);
+ALTER TABLE users ALTER COLUMN initial_deposit TYPE NUMERIC(19, 2);
+ALTER TABLE transfers ALTER COLUMN amount TYPE NUMERIC(19, 2);
+ALTER TABLE bank_account_slots ALTER COLUMN balance TYPE NUMERIC(19, 2);
+ALTER TABLE ledger_entries ALTER COLUMN amount TYPE NUMERIC(19, 2);
+ALTER TABLE transfer_idempotency_keys ALTER COLUMN amount TYPE NUMERIC(19, 2);
+
+-- Users, bank accounts and transfers take their ids from the BIGSERIAL sequences through
+-- Hibernate's pooled optimizer, one sequence call per INCREMENT BY ids, so inserts can be
+-- batched. The increment must equal bank.id.allocation-size. With
+-- increment_size_mismatch_strategy=fix Hibernate adopts the database increment at startup, so
+-- before these statements run it falls back to one sequence call per id instead of failing.
+-- Column defaults keep working for plain SQL inserts, which just skip ahead by one block.
+ALTER SEQUENCE users_id_seq INCREMENT BY 50;
+ALTER SEQUENCE bank_accounts_id_seq INCREMENT BY 50;
+ALTER SEQUENCE transfers_id_seq INCREMENT BY 50;
+
+-- Optimistic version of bank accounts, checked when an account entity is written. Native
+-- balance updates (transfers in conditional mode, interest, slot and ledger folds) bump it too.
+ALTER TABLE bank_accounts ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- Keyset sort indexes for /api/search/cursor. ORDER BY full_name compares with the column
+-- collation, which a text_pattern_ops index cannot serve outside the C locale, so the
+-- pattern index only backs the LIKE prefix filter and plain indexes back the sorts.
+ALTER INDEX idx_users_full_name_id RENAME TO idx_users_full_name_pattern;
+CREATE INDEX idx_users_full_name_id ON users (full_name, id);
+CREATE INDEX idx_users_username_id ON users (username, id);
+
+-- Idempotency keys are scoped by the sender: two senders may use the same key for their own
+-- transfers, and a retry only ever replays a transfer of the same sender.
+ALTER TABLE transfer_idempotency_keys DROP CONSTRAINT transfer_idempotency_keys_pkey;
+ALTER TABLE transfer_idempotency_keys ADD PRIMARY KEY (sender_id, idempotency_key);
@@ -0,0 +1,37 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import com.bankoperations.bankoperations.service.BloomFilter;
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testAddedValuesAreAlwaysReported() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    public void testFalsePositiveRateStaysNearConfiguredProbability() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("+7900" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 10000; i < 110000; i++) {
+            if (filter.mightContain("+7900" + i)) {
+                falsePositives++;
+            }
+        }
+        assertTrue("False positives: " + falsePositives, falsePositives < 2000);
+    }
+}
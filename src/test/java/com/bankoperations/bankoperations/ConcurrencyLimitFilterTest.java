@@ -0,0 +1,99 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.bankoperations.bankoperations.config.ConcurrencyLimitFilter;
+import com.bankoperations.bankoperations.service.BankMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+public class ConcurrencyLimitFilterTest {
+
+    @Test
+    public void testRequestBeyondLimitIsRejected() throws Exception {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(true, 1, 50, new BankMetrics(meterRegistry));
+
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MockHttpServletResponse> first = executor.submit(() -> {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                filter.doFilter(new MockHttpServletRequest("GET", "/users"), response, (request, servletResponse) -> {
+                    inFlight.countDown();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+                return response;
+            });
+            assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+
+            MockHttpServletResponse rejected = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/users"), rejected, new MockFilterChain());
+            assertEquals(503, rejected.getStatus());
+            assertEquals(1.0, meterRegistry.get("bank.http.rejected").counter().count(), 0.0);
+
+            release.countDown();
+            assertEquals(200, first.get(5, TimeUnit.SECONDS).getStatus());
+
+            MockHttpServletResponse accepted = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/users"), accepted, new MockFilterChain());
+            assertEquals(200, accepted.getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testAsyncRequestKeepsPermitUntilComplete() throws Exception {
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(true, 1, 50, new BankMetrics(new SimpleMeterRegistry()));
+
+        MockHttpServletRequest export = new MockHttpServletRequest("GET", "/users/export");
+        export.setAsyncSupported(true);
+        filter.doFilter(export, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+        assertTrue(export.isAsyncStarted());
+
+        // The chain has returned, but the body is still streaming.
+        MockHttpServletResponse rejected = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/users"), rejected, new MockFilterChain());
+        assertEquals(503, rejected.getStatus());
+
+        ((MockAsyncContext) export.getAsyncContext()).complete();
+        MockHttpServletResponse accepted = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/users"), accepted, new MockFilterChain());
+        assertEquals(200, accepted.getStatus());
+    }
+
+    @Test
+    public void testLimitFollowsActualThreadingMode() throws Exception {
+        MockEnvironment environment = new MockEnvironment().withProperty("spring.threads.virtual.enabled", "true");
+        ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(environment, 0, 0,
+                new BankMetrics(new SimpleMeterRegistry()));
+
+        // Without a permit to hand out, a request only gets through when the limit is off.
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(new MockHttpServletRequest("GET", "/users"), response, new MockFilterChain());
+        assertEquals(Runtime.version().feature() >= 21 ? 503 : 200, response.getStatus());
+
+        environment.setProperty("spring.threads.virtual.enabled", "false");
+        MockHttpServletResponse platform = new MockHttpServletResponse();
+        new ConcurrencyLimitFilter(environment, 0, 0, new BankMetrics(new SimpleMeterRegistry()))
+                .doFilter(new MockHttpServletRequest("GET", "/users"), platform, new MockFilterChain());
+        assertEquals(200, platform.getStatus());
+    }
+}
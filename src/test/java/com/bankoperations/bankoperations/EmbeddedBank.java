@@ -0,0 +1,89 @@
+package com.bankoperations.bankoperations;
+
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The application on an in-memory H2 database, with the schema generated from the entities
+ * and the scheduled jobs switched off. Shared by the stress tests and the JMH benchmarks.
+ * Benchmarks on top of it warm up for longer: the whole Spring and Hibernate call path has to
+ * be compiled before the numbers settle.
+ */
+public final class EmbeddedBank {
+
+    /**
+     * BCrypt hash of "password". Seeded users share it, so seeding does not pay for hashing.
+     */
+    public static final String PASSWORD_HASH = "$2a$10$ygbfJh4otQFt.eoeXP.Jr.t5wUdAbcFhxl8x0e20iiWEC03LCulW.";
+
+    private EmbeddedBank() {
+    }
+
+    public static ConfigurableApplicationContext start(String... properties) {
+        System.setProperty("LOG_DIR", "target/benchmark-logs");
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=jdbc:h2:mem:bank-" + System.nanoTime()
+                        + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=10000;NON_KEYWORDS=TIMESTAMP",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.devtools.restart.enabled=false",
+                "--server.port=0",
+                "--management.server.port=-1",
+                "--bank.interest.enabled=false",
+                "--logging.level.root=WARN"));
+        args.addAll(Arrays.asList(properties));
+        return new SpringApplicationBuilder(BankOperationsApplication.class).run(args.toArray(new String[0]));
+    }
+
+    /**
+     * Inserts {@code count} users with a bank account each and returns their ids.
+     */
+    public static List<Long> seedUsers(ConfigurableApplicationContext context, int count, Money balance) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        BankAccountRepository bankAccountRepository = context.getBean(BankAccountRepository.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        List<Long> ids = new ArrayList<>(count);
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < count; i++) {
+                User user = newUser("seed" + i);
+                user.setInitialDeposit(balance);
+                user = userRepository.save(user);
+
+                BankAccount bankAccount = new BankAccount();
+                bankAccount.setUser(user);
+                bankAccount.setBalance(balance);
+                bankAccountRepository.save(bankAccount);
+                ids.add(user.getId());
+            }
+        });
+        return ids;
+    }
+
+    public static User newUser(String name) {
+        User user = new User();
+        user.setUsername(name);
+        user.setPassword(PASSWORD_HASH);
+        user.setFullName("User " + name);
+        user.setEmail(name + "@example.com");
+        user.setPhoneNumber("+1555" + Math.abs(name.hashCode()));
+        user.setDateOfBirth(new Date(0));
+        user.setInitialDeposit(Money.of("100.00"));
+        return user;
+    }
+}
@@ -0,0 +1,118 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.service.InterestAccrualEngine;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Interest over ten accounts of 100.00 initial deposit, in chunks of three accounts and two
+ * partitions, so chunk and partition boundaries fall between accounts.
+ */
+public class InterestAccrualEngineTest {
+
+    private static final String[] BALANCES = {"100.00", "200.00", "207.00", "33.33", "0.00", "150.00", "197.15",
+            "1.00", "99.99", "206.99"};
+
+    private static ConfigurableApplicationContext context;
+
+    private static InterestAccrualEngine interestAccrualEngine;
+
+    private static BankAccountRepository bankAccountRepository;
+
+    private static TransactionTemplate transactionTemplate;
+
+    private static final List<Long> accountIds = new ArrayList<>();
+
+    @BeforeClass
+    public static void startBank() {
+        context = EmbeddedBank.start("--bank.interest.chunk-size=3", "--bank.interest.parallelism=2");
+        interestAccrualEngine = context.getBean(InterestAccrualEngine.class);
+        bankAccountRepository = context.getBean(BankAccountRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        for (Long userId : EmbeddedBank.seedUsers(context, BALANCES.length, Money.of("100.00"))) {
+            accountIds.add(bankAccountRepository.findByUserId(userId).getId());
+        }
+    }
+
+    @AfterClass
+    public static void stopBank() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Before
+    public void resetBalances() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < BALANCES.length; i++) {
+                BankAccount bankAccount = bankAccountRepository.findById(accountIds.get(i)).orElseThrow();
+                bankAccount.setBalance(Money.of(BALANCES[i]));
+            }
+        });
+    }
+
+    @Test
+    public void testEveryAccountIsCreditedOnce() {
+        long credited = interestAccrualEngine.accrueAll();
+
+        long expectedCredited = 0;
+        for (int i = 0; i < BALANCES.length; i++) {
+            Money expected = accrued(BALANCES[i]);
+            assertEquals("account " + i, expected, balance(i));
+            if (!expected.equals(Money.of(BALANCES[i]))) {
+                expectedCredited++;
+            }
+        }
+        assertEquals(expectedCredited, credited);
+    }
+
+    @Test
+    public void testRateAndCap() {
+        interestAccrualEngine.accrueAll();
+        assertEquals(Money.of("105.00"), balance(0));
+        // 200.00 * 1.05 is above the cap of 100.00 * 2.07.
+        assertEquals(Money.of("207.00"), balance(1));
+        assertEquals(Money.of("207.00"), balance(2));
+        assertEquals(Money.of("35.00"), balance(3));
+        assertEquals(Money.of("0.00"), balance(4));
+        assertEquals(Money.of("1.05"), balance(7));
+        assertEquals(Money.of("207.00"), balance(9));
+    }
+
+    @Test
+    public void testRangeExcludesLowerAndIncludesUpperBound() {
+        long credited = interestAccrualEngine.accrueRange(accountIds.get(3), accountIds.get(7));
+
+        // Accounts 4 to 7; account 4 has nothing to credit.
+        assertEquals(3, credited);
+        for (int i = 0; i < BALANCES.length; i++) {
+            Money expected = i > 3 && i <= 7 ? accrued(BALANCES[i]) : Money.of(BALANCES[i]);
+            assertEquals("account " + i, expected, balance(i));
+        }
+    }
+
+    private static Money accrued(String balance) {
+        BigDecimal cap = new BigDecimal("100.00").multiply(InterestAccrualEngine.MAX_BALANCE_MULTIPLIER);
+        BigDecimal grown = new BigDecimal(balance).multiply(InterestAccrualEngine.INTEREST_RATE);
+        return Money.of(grown.min(cap), RoundingMode.HALF_UP);
+    }
+
+    private static Money balance(int account) {
+        return bankAccountRepository.findById(accountIds.get(account)).orElseThrow().getBalance();
+    }
+}
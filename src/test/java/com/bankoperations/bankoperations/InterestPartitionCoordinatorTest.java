@@ -0,0 +1,126 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.InterestPartition;
+import com.bankoperations.bankoperations.entity.InterestTick;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.repository.InterestPartitionRepository;
+import com.bankoperations.bankoperations.repository.InterestTickRepository;
+import com.bankoperations.bankoperations.service.InterestAccrualEngine;
+import com.bankoperations.bankoperations.service.InterestPartitionCoordinator;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+
+/**
+ * Two coordinators on one embedded database stand in for two nodes of a cluster.
+ */
+public class InterestPartitionCoordinatorTest {
+
+    private static final int ACCOUNTS = 100;
+
+    private static ConfigurableApplicationContext context;
+
+    private static InterestPartitionCoordinator firstNode;
+
+    private static InterestPartitionCoordinator secondNode;
+
+    private static BankAccountRepository bankAccountRepository;
+
+    @BeforeClass
+    public static void startBank() {
+        context = EmbeddedBank.start("--bank.interest.partitions=8", "--bank.interest.chunk-size=5");
+        EmbeddedBank.seedUsers(context, ACCOUNTS, Money.of("100.00"));
+        bankAccountRepository = context.getBean(BankAccountRepository.class);
+        firstNode = context.getBean(InterestPartitionCoordinator.class);
+        secondNode = newNode("second");
+    }
+
+    @AfterClass
+    public static void stopBank() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testTickIsSplitAcrossNodesAndCreditsEveryAccountOnce() throws Exception {
+        Money expected = balances().get(0).multiply(InterestAccrualEngine.INTEREST_RATE, RoundingMode.HALF_UP);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Long> first = executor.submit(() -> firstNode.run(1));
+            Future<Long> second = executor.submit(() -> secondNode.run(1));
+            assertEquals(ACCOUNTS, Math.max(0, first.get()) + Math.max(0, second.get()));
+        } finally {
+            executor.shutdown();
+        }
+
+        assertAllBalances(expected);
+        assertEquals(-1, firstNode.run(1));
+        assertEquals(-1, secondNode.run(1));
+        assertAllBalances(expected);
+    }
+
+    @Test
+    public void testPartitionOfDeadNodeIsResumedFromCheckpoint() {
+        InterestTickRepository interestTickRepository = context.getBean(InterestTickRepository.class);
+        InterestPartitionRepository interestPartitionRepository = context.getBean(InterestPartitionRepository.class);
+        InterestAccrualEngine interestAccrualEngine = context.getBean(InterestAccrualEngine.class);
+
+        // A node planned tick 2 as one partition, credited the first half and died.
+        long minId = bankAccountRepository.findMinId();
+        long maxId = bankAccountRepository.findMaxId();
+        long middle = minId + ACCOUNTS / 2 - 1;
+        InterestTick tick = new InterestTick();
+        tick.setTick(2L);
+        tick.setPartitions(1);
+        tick.setPlannedBy("dead");
+        tick.setPlannedAt(new Date());
+        interestTickRepository.save(tick);
+        InterestPartition partition = new InterestPartition();
+        partition.setTick(2);
+        partition.setFromId(minId - 1);
+        partition.setToId(maxId);
+        partition.setCheckpointId(middle);
+        partition.setOwner("dead");
+        partition.setLeaseUntil(new Date(System.currentTimeMillis() - 1000));
+        interestPartitionRepository.save(partition);
+        Money before = balances().get(0);
+        interestAccrualEngine.accrueRange(minId - 1, middle);
+
+        assertEquals(ACCOUNTS / 2, secondNode.run(2));
+        assertAllBalances(before.multiply(InterestAccrualEngine.INTEREST_RATE, RoundingMode.HALF_UP));
+        InterestPartition resumed = interestPartitionRepository.findById(partition.getId()).orElseThrow();
+        assertEquals(secondNode.getOwner(), resumed.getOwner());
+        assertEquals(maxId, resumed.getCheckpointId());
+        assertNotNull(resumed.getCompletedAt());
+    }
+
+    private static InterestPartitionCoordinator newNode(String name) {
+        return new InterestPartitionCoordinator(context.getBean(InterestAccrualEngine.class), bankAccountRepository,
+                context.getBean(InterestTickRepository.class), context.getBean(InterestPartitionRepository.class),
+                context.getBean(PlatformTransactionManager.class), 8, 60000, 1440, name);
+    }
+
+    private static List<Money> balances() {
+        return bankAccountRepository.findAll().stream().map(BankAccount::getBalance).toList();
+    }
+
+    private static void assertAllBalances(Money expected) {
+        for (Money balance : balances()) {
+            assertEquals(expected, balance);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import com.bankoperations.bankoperations.config.JwtAuthenticationFilter;
+import com.bankoperations.bankoperations.config.PrincipalSource;
+import com.bankoperations.bankoperations.dto.AuthenticatedUser;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.service.BankMetrics;
+import com.bankoperations.bankoperations.service.JwtService;
+import com.bankoperations.bankoperations.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class JwtAuthenticationFilterTest {
+
+    private JwtService jwtService;
+
+    private UserService userService;
+
+    private JwtAuthenticationFilter filter;
+
+    private MockHttpServletRequest request;
+
+    @Before
+    public void setUp() {
+        jwtService = new JwtService(100, new BankMetrics(new SimpleMeterRegistry()));
+        userService = mock(UserService.class);
+        filter = new JwtAuthenticationFilter(jwtService);
+        ReflectionTestUtils.setField(filter, "userService", userService);
+
+        User user = new User();
+        user.setId(7L);
+        user.setUsername("alice");
+        user.setEmail("alice@example.com");
+        request = new MockHttpServletRequest();
+        request.addHeader(JwtAuthenticationFilter.HEADER_NAME,
+                JwtAuthenticationFilter.BEARER_PREFIX + jwtService.generateToken(user));
+    }
+
+    @After
+    public void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void testClaimsPrincipalNeedsNoLookup() throws Exception {
+        ReflectionTestUtils.setField(filter, "principalSource", PrincipalSource.CLAIMS);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        AuthenticatedUser principal = (AuthenticatedUser) authentication.getPrincipal();
+        assertEquals(Long.valueOf(7L), principal.getId());
+        assertEquals("alice", principal.getUsername());
+        assertEquals("alice@example.com", principal.getEmail());
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    public void testDatabasePrincipalIsLoadedByUsername() throws Exception {
+        ReflectionTestUtils.setField(filter, "principalSource", PrincipalSource.DATABASE);
+        AuthenticatedUser stored = new AuthenticatedUser(7L, "alice", "alice@example.com", "hash");
+        when(userService.userDetailsService()).thenReturn(username -> stored);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+
+        assertSame(stored, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+    }
+}
@@ -0,0 +1,53 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.service.BankMetrics;
+import com.bankoperations.bankoperations.service.JwtService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.security.SignatureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JwtServiceTest {
+
+    private JwtService jwtService;
+
+    private User user;
+
+    @Before
+    public void setUp() {
+        jwtService = new JwtService(100, new BankMetrics(new SimpleMeterRegistry()));
+        user = new User();
+        user.setId(7L);
+        user.setUsername("alice");
+        user.setEmail("alice@example.com");
+    }
+
+    @Test
+    public void testGeneratedTokenIsValidForItsUser() {
+        String token = jwtService.generateToken(user);
+        assertEquals("alice", jwtService.extractUserName(token));
+        assertTrue(jwtService.isTokenValid(token, user));
+    }
+
+    @Test
+    public void testRepeatedParsingReusesVerifiedClaims() {
+        String token = jwtService.generateToken(user);
+        Claims first = jwtService.parseClaims(token);
+        Claims second = jwtService.parseClaims(token);
+        assertSame(first, second);
+        assertEquals(7, ((Number) first.get("id")).intValue());
+    }
+
+    @Test(expected = SignatureException.class)
+    public void testTamperedTokenIsRejected() {
+        String token = jwtService.generateToken(user);
+        user.setUsername("mallory");
+        String[] forged = jwtService.generateToken(user).split("\\.");
+        String[] parts = token.split("\\.");
+        jwtService.parseClaims(parts[0] + "." + forged[1] + "." + parts[2]);
+    }
+}
@@ -0,0 +1,122 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.math.RoundingMode;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.LedgerEntryType;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.repository.LedgerEntryRepository;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.LedgerCompactionService;
+import com.bankoperations.bankoperations.service.LedgerService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class LedgerCompactionServiceTest {
+
+    private static ConfigurableApplicationContext context;
+
+    private static LedgerService ledgerService;
+
+    private static LedgerCompactionService ledgerCompactionService;
+
+    private static UserRepository userRepository;
+
+    private static BankAccountRepository bankAccountRepository;
+
+    private static LedgerEntryRepository ledgerEntryRepository;
+
+    private static TransactionTemplate transactionTemplate;
+
+    private static List<Long> userIds;
+
+    @BeforeClass
+    public static void startBank() {
+        context = EmbeddedBank.start("--bank.transfer.mode=ledger", "--bank.ledger.compaction-interval-ms=3600000");
+        userIds = EmbeddedBank.seedUsers(context, 2, Money.of("100.00"));
+        ledgerService = context.getBean(LedgerService.class);
+        ledgerCompactionService = context.getBean(LedgerCompactionService.class);
+        userRepository = context.getBean(UserRepository.class);
+        bankAccountRepository = context.getBean(BankAccountRepository.class);
+        ledgerEntryRepository = context.getBean(LedgerEntryRepository.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+    }
+
+    @AfterClass
+    public static void stopBank() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testEntryCommittingLateIsNotSkipped() throws Exception {
+        Long slowUserId = userIds.get(0);
+        Long otherUserId = userIds.get(1);
+        credit(slowUserId, Money.of("5.00"));
+
+        // Takes its entry id before the next credit and commits after it, long past any lag
+        // window measured from created_at.
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> slowCredit = executor.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                lockAndRecord(slowUserId, Money.of("10.00"));
+                written.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+            assertTrue(written.await(10, TimeUnit.SECONDS));
+            credit(otherUserId, Money.of("20.00"));
+
+            Future<Long> compaction = executor.submit(() -> ledgerCompactionService.compact());
+            Thread.sleep(300);
+            assertFalse("Compaction must wait for the credit in flight", compaction.isDone());
+
+            release.countDown();
+            slowCredit.get(10, TimeUnit.SECONDS);
+            assertEquals(Long.valueOf(2), compaction.get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+
+        assertSnapshot(slowUserId, Money.of("115.00"));
+        assertSnapshot(otherUserId, Money.of("120.00"));
+        assertEquals(0, ledgerCompactionService.compact());
+    }
+
+    private static void credit(Long userId, Money amount) {
+        transactionTemplate.executeWithoutResult(status -> lockAndRecord(userId, amount));
+    }
+
+    private static void lockAndRecord(Long userId, Money amount) {
+        userRepository.findByIdForShare(userId);
+        ledgerService.record(bankAccountRepository.findByUserId(userId), LedgerEntryType.TRANSFER_CREDIT, amount,
+                new Date(0));
+    }
+
+    private static void assertSnapshot(Long userId, Money expected) {
+        BankAccount bankAccount = bankAccountRepository.findByUserId(userId);
+        assertEquals(expected, bankAccount.getBalance());
+        assertEquals(expected, Money.of(ledgerEntryRepository.currentBalance(bankAccount.getId()), RoundingMode.HALF_UP));
+    }
+}
@@ -0,0 +1,44 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import com.bankoperations.bankoperations.entity.Money;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+public class MoneyTest {
+
+    @Test
+    public void testArithmeticIsExactInMinorUnits() {
+        Money total = Money.ZERO;
+        for (int i = 0; i < 10; i++) {
+            total = total.plus(Money.of("0.10"));
+        }
+
+        assertEquals(Money.of("1.00"), total);
+        assertEquals(Money.of(new BigDecimal("1")), total);
+        assertEquals(Money.of("105.00"), Money.of("100.00").multiply(new BigDecimal("1.05"), RoundingMode.HALF_UP));
+        assertEquals(Money.of("0.01"), Money.of("0.01").multiply(new BigDecimal("1.05"), RoundingMode.HALF_UP));
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testMoreThanTwoDecimalsAreRejected() {
+        Money.of("12.345");
+    }
+
+    @Test(expected = ArithmeticException.class)
+    public void testOverflowFailsInsteadOfWrapping() {
+        Money.ofMinor(Long.MAX_VALUE).plus(Money.of("0.01"));
+    }
+
+    @Test
+    public void testJsonIsPlainNumber() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        assertEquals("12.50", objectMapper.writeValueAsString(Money.of("12.5")));
+        assertEquals(Money.of("12.50"), objectMapper.readValue("12.5", Money.class));
+    }
+}
@@ -0,0 +1,181 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.bankoperations.bankoperations.config.SecurityConfiguration;
+import com.bankoperations.bankoperations.controller.AuthController;
+import com.bankoperations.bankoperations.dto.SignInRequest;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.exception.LoginThrottledException;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.AuthenticationService;
+import com.bankoperations.bankoperations.service.BankMetrics;
+import com.bankoperations.bankoperations.service.JwtService;
+import com.bankoperations.bankoperations.service.PasswordHashingExecutor;
+import com.bankoperations.bankoperations.service.UserDetailsCache;
+import com.bankoperations.bankoperations.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.AuthenticationProvider;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+public class PasswordHashingExecutorTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Spy
+    private UserDetailsCache userDetailsCache = new UserDetailsCache(100, 300);
+
+    @InjectMocks
+    private UserService userService;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(2);
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        callers.shutdownNow();
+    }
+
+    @Test
+    public void testSaturatedPoolRejectsAtOnce() throws Exception {
+        PasswordHashingExecutor executor = saturated();
+
+        long start = System.nanoTime();
+        try {
+            executor.execute(() -> "hash");
+            fail("A full hashing queue must shed the sign-in");
+        } catch (LoginThrottledException e) {
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+        }
+        assertEquals(1, executor.getRejectedCount());
+
+        release.countDown();
+        awaitIdle(executor);
+        assertEquals("hash", executor.execute(() -> "hash"));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testSlowHashTimesOut() {
+        PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1, 50);
+        try {
+            executor.execute(() -> {
+                release.await();
+                return "hash";
+            });
+            fail("A hash slower than the timeout must fail the sign-in");
+        } catch (LoginThrottledException e) {
+            assertEquals(0, executor.getRejectedCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testThrottledSignInIsAnswered503WithRetryAfter() throws Exception {
+        PasswordHashingExecutor executor = saturated();
+        AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+        AuthController authController = new AuthController(new AuthenticationService(mock(JwtService.class),
+                authenticationManager, executor, new BankMetrics(new SimpleMeterRegistry())));
+
+        SignInRequest request = new SignInRequest();
+        request.setUsername("alice");
+        request.setPassword("password");
+        ResponseEntity<?> response = authController.signIn(request);
+
+        assertEquals(503, response.getStatusCode().value());
+        assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(authenticationManager, never()).authenticate(any());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testHashIsUpgradedWhenStrengthIsRaised() {
+        String weakHash = new BCryptPasswordEncoder(4).encode("password");
+        signIn(weakHash, 5);
+
+        ArgumentCaptor<String> upgraded = ArgumentCaptor.forClass(String.class);
+        verify(userRepository).updatePassword(eq("alice"), upgraded.capture());
+        assertTrue(upgraded.getValue(), upgraded.getValue().startsWith("$2a$05$"));
+        assertTrue(new BCryptPasswordEncoder(5).matches("password", upgraded.getValue()));
+        // The cached principal still holds the old hash, so the next sign-in has to reload it.
+        assertNull(userDetailsCache.get("alice"));
+    }
+
+    @Test
+    public void testHashIsKeptAtConfiguredStrength() {
+        signIn(new BCryptPasswordEncoder(4).encode("password"), 4);
+        verify(userRepository, never()).updatePassword(anyString(), anyString());
+    }
+
+    /**
+     * A pool of one thread with a queue of one, both taken by hashes waiting on {@link #release}.
+     */
+    private PasswordHashingExecutor saturated() throws InterruptedException {
+        PasswordHashingExecutor executor = new PasswordHashingExecutor(1, 1, 5000);
+        CountDownLatch running = new CountDownLatch(1);
+        callers.submit(() -> executor.execute(() -> {
+            running.countDown();
+            release.await();
+            return "running";
+        }));
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        callers.submit(() -> executor.execute(() -> "queued"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (executor.getQueueSize() < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, executor.getQueueSize());
+        return executor;
+    }
+
+    private static void awaitIdle(PasswordHashingExecutor executor) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((executor.getQueueSize() > 0 || executor.getActiveCount() > 0) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, executor.getQueueSize());
+        assertEquals(0, executor.getActiveCount());
+    }
+
+    private void signIn(String storedHash, int strength) {
+        User alice = EmbeddedBank.newUser("alice");
+        alice.setId(1L);
+        alice.setPassword(storedHash);
+        when(userRepository.findByUsernameOnPrimary("alice")).thenReturn(alice);
+
+        SecurityConfiguration securityConfiguration = new SecurityConfiguration();
+        ReflectionTestUtils.setField(securityConfiguration, "userService", userService);
+        ReflectionTestUtils.setField(securityConfiguration, "bcryptStrength", strength);
+        AuthenticationProvider authenticationProvider = securityConfiguration.authenticationProvider();
+        authenticationProvider.authenticate(new UsernamePasswordAuthenticationToken("alice", "password"));
+    }
+}
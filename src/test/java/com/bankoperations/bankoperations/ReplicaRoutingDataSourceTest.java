@@ -0,0 +1,134 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.bankoperations.bankoperations.config.ReplicaRoutingDataSource;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Two embedded databases stand in for the primary and a replica; each knows its own name.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private static final String LAG_QUERY = "SELECT lag_ms FROM replica_lag";
+
+    private DataSource primary;
+
+    private DataSource replica;
+
+    private ReplicaRoutingDataSource routingDataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readWrite;
+
+    private TransactionTemplate readOnly;
+
+    @Before
+    public void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+        new JdbcTemplate(replica).execute("CREATE TABLE replica_lag (lag_ms BIGINT)");
+        new JdbcTemplate(replica).update("INSERT INTO replica_lag VALUES (0)");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        routingDataSource.destroy();
+        new JdbcTemplate(primary).execute("SHUTDOWN");
+        new JdbcTemplate(replica).execute("SHUTDOWN");
+    }
+
+    @Test
+    public void testReadOnlyTransactionsGoToReplica() {
+        route(replica);
+
+        assertEquals("replica", readOnly.execute(status -> database()));
+        assertEquals("primary", readWrite.execute(status -> database()));
+        assertEquals("primary", database());
+    }
+
+    @Test
+    public void testStaleReplicaIsSkippedUntilItCatchesUp() {
+        route(replica);
+
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET lag_ms = 5000");
+        routingDataSource.checkReplicas();
+        assertFalse(routingDataSource.isAvailable(0));
+        assertEquals("primary", readOnly.execute(status -> database()));
+
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET lag_ms = 200");
+        routingDataSource.checkReplicas();
+        assertTrue(routingDataSource.isAvailable(0));
+        assertEquals("replica", readOnly.execute(status -> database()));
+    }
+
+    @Test
+    public void testReplicaWithUnknownLagIsSkipped() {
+        route(replica);
+
+        // What the PostgreSQL lag query reports while the WAL receiver is not streaming.
+        new JdbcTemplate(replica).update("UPDATE replica_lag SET lag_ms = NULL");
+        routingDataSource.checkReplicas();
+        assertFalse(routingDataSource.isAvailable(0));
+        assertEquals("primary", readOnly.execute(status -> database()));
+
+        new JdbcTemplate(replica).update("DELETE FROM replica_lag");
+        routingDataSource.checkReplicas();
+        assertFalse(routingDataSource.isAvailable(0));
+
+        new JdbcTemplate(replica).update("INSERT INTO replica_lag VALUES (0)");
+        routingDataSource.checkReplicas();
+        assertTrue(routingDataSource.isAvailable(0));
+    }
+
+    @Test
+    public void testReadFallsBackToPrimaryWhenReplicaIsDown() throws Exception {
+        DataSource unreachable = mock(DataSource.class);
+        when(unreachable.getConnection())
+                .thenReturn(replica.getConnection())
+                .thenThrow(new SQLException("Connection refused"));
+        route(unreachable);
+
+        assertEquals("primary", readOnly.execute(status -> database()));
+        assertFalse(routingDataSource.isAvailable(0));
+        assertEquals("primary", readOnly.execute(status -> database()));
+        verify(unreachable, times(2)).getConnection();
+    }
+
+    private void route(DataSource replicaDataSource) {
+        routingDataSource = new ReplicaRoutingDataSource(primary, List.of(replicaDataSource), LAG_QUERY, 1000, 0);
+        routingDataSource.afterPropertiesSet();
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        readWrite = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        readOnly.setReadOnly(true);
+    }
+
+    private String database() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + "-routing;DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE node (name VARCHAR(16))");
+        jdbcTemplate.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,25 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import com.bankoperations.bankoperations.service.SearchCursor;
+import org.junit.Test;
+import org.springframework.data.domain.Sort;
+
+public class SearchCursorTest {
+
+    @Test
+    public void testCursorRoundTrip() {
+        SearchCursor cursor = new SearchCursor("fullName", Sort.Direction.DESC, 42L, "Ivanov\nIvan");
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+        assertEquals("fullName", decoded.getSortField());
+        assertEquals(Sort.Direction.DESC, decoded.getDirection());
+        assertEquals(42L, decoded.getLastId());
+        assertEquals("Ivanov\nIvan", decoded.getLastValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedCursorIsRejected() {
+        SearchCursor.decode("not a cursor");
+    }
+}
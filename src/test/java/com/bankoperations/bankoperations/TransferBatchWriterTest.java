@@ -0,0 +1,84 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.Transfer;
+import com.bankoperations.bankoperations.repository.TransferBatchWriter;
+import com.bankoperations.bankoperations.repository.TransferRepository;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class TransferBatchWriterTest {
+
+    private static ConfigurableApplicationContext context;
+
+    private static List<Long> userIds;
+
+    @BeforeClass
+    public static void startBank() {
+        context = EmbeddedBank.start("--bank.id.allocation-size=20");
+        userIds = EmbeddedBank.seedUsers(context, 2, Money.of("100.00"));
+    }
+
+    @AfterClass
+    public static void stopBank() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testBatchIdsShareTheEntitySequence() {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        TransferRepository transferRepository = context.getBean(TransferRepository.class);
+        TransferBatchWriter transferBatchWriter = context.getBean(TransferBatchWriter.class);
+
+        List<Transfer> batch = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            ids.add(transferRepository.saveAndFlush(transfer(userRepository)).getId());
+            for (int i = 0; i < 45; i++) {
+                batch.add(transfer(userRepository));
+            }
+            transferBatchWriter.insertAll(batch, 10);
+            batch.forEach(transfer -> ids.add(transfer.getId()));
+            ids.add(transferRepository.saveAndFlush(transfer(userRepository)).getId());
+        });
+
+        Set<Long> distinct = new HashSet<>(ids);
+        assertEquals(47, distinct.size());
+        assertFalse(distinct.contains(null));
+        assertEquals(47, transferRepository.count());
+        assertTrue(transferRepository.findAllById(distinct).stream()
+                .allMatch(transfer -> transfer.getAmount().equals(Money.of("1.25"))));
+    }
+
+    @Test
+    public void testSequenceIncrementFollowsAllocationSize() {
+        Long increment = context.getBean(JdbcTemplate.class).queryForObject(
+                "SELECT INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'TRANSFERS_ID_SEQ'", Long.class);
+        assertEquals(Long.valueOf(20), increment);
+    }
+
+    private static Transfer transfer(UserRepository userRepository) {
+        Transfer transfer = new Transfer();
+        transfer.setSender(userRepository.getReferenceById(userIds.get(0)));
+        transfer.setRecipient(userRepository.getReferenceById(userIds.get(1)));
+        transfer.setAmount(Money.of("1.25"));
+        transfer.setTimestamp(new Date());
+        return transfer;
+    }
+}
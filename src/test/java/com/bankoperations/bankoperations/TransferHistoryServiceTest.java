@@ -0,0 +1,111 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.bankoperations.bankoperations.dto.TransferHistoryItem;
+import com.bankoperations.bankoperations.dto.TransferHistoryPage;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.Transfer;
+import com.bankoperations.bankoperations.repository.TransferRepository;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.SearchCursor;
+import com.bankoperations.bankoperations.service.TransferHistoryService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class TransferHistoryServiceTest {
+
+    private static ConfigurableApplicationContext context;
+
+    private static TransferHistoryService transferHistoryService;
+
+    private static List<Long> userIds;
+
+    /**
+     * Ids of the transfers from the first to the second user, newest first.
+     */
+    private static final List<Long> expected = new ArrayList<>();
+
+    @BeforeClass
+    public static void startBank() {
+        context = EmbeddedBank.start();
+        userIds = EmbeddedBank.seedUsers(context, 3, Money.of("100.00"));
+        transferHistoryService = context.getBean(TransferHistoryService.class);
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        TransferRepository transferRepository = context.getBean(TransferRepository.class);
+        List<Transfer> transfers = new ArrayList<>();
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            // Three transfers per timestamp, with microseconds, so pages break inside groups of ties.
+            for (int i = 0; i < 21; i++) {
+                Timestamp timestamp = new Timestamp(1_700_000_000_000L + (i / 3) * 1000L);
+                timestamp.setNanos(timestamp.getNanos() + 123_456);
+                Transfer transfer = new Transfer();
+                transfer.setSender(userRepository.getReferenceById(userIds.get(0)));
+                transfer.setRecipient(userRepository.getReferenceById(userIds.get(1)));
+                transfer.setAmount(Money.of("1.00"));
+                transfer.setTimestamp(timestamp);
+                transfers.add(transferRepository.save(transfer));
+
+                Transfer unrelated = new Transfer();
+                unrelated.setSender(userRepository.getReferenceById(userIds.get(2)));
+                unrelated.setRecipient(userRepository.getReferenceById(userIds.get(0)));
+                unrelated.setAmount(Money.of("2.00"));
+                unrelated.setTimestamp(timestamp);
+                transferRepository.save(unrelated);
+            }
+        });
+        for (int i = transfers.size() - 1; i >= 0; i--) {
+            expected.add(transfers.get(i).getId());
+        }
+    }
+
+    @AfterClass
+    public static void stopBank() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testSentPagesFollowCursorAcrossTies() {
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            TransferHistoryPage page = transferHistoryService.getSent(userIds.get(0), 4, cursor);
+            for (TransferHistoryItem item : page.getItems()) {
+                assertEquals(userIds.get(1), item.getCounterpartyId());
+                seen.add(item.getId());
+            }
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+        assertEquals(expected, seen);
+        assertEquals(6, pages);
+    }
+
+    @Test
+    public void testReceivedPageStartsAfterCursor() {
+        TransferHistoryPage first = transferHistoryService.getReceived(userIds.get(1), 5, null);
+        TransferHistoryPage second = transferHistoryService.getReceived(userIds.get(1), 5, first.getNextCursor());
+        assertEquals(expected.subList(0, 5), first.getItems().stream().map(TransferHistoryItem::getId).toList());
+        assertEquals(expected.subList(5, 10), second.getItems().stream().map(TransferHistoryItem::getId).toList());
+        assertTrue(transferHistoryService.getReceived(userIds.get(2), 5, null).getItems().isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCursorOfAnotherListIsRejected() {
+        transferHistoryService.getSent(userIds.get(0), 5,
+                new SearchCursor("fullName", Sort.Direction.ASC, 1L, "x").encode());
+    }
+}
@@ -0,0 +1,154 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Date;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.bankoperations.bankoperations.dto.TransferResponse;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.Transfer;
+import com.bankoperations.bankoperations.entity.TransferIdempotencyKey;
+import com.bankoperations.bankoperations.entity.TransferIdempotencyKeyId;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.exception.InvalidTransferException;
+import com.bankoperations.bankoperations.repository.TransferIdempotencyKeyRepository;
+import com.bankoperations.bankoperations.repository.TransferRepository;
+import com.bankoperations.bankoperations.service.BankMetrics;
+import com.bankoperations.bankoperations.service.TransferIdempotencyService;
+import com.bankoperations.bankoperations.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.DataIntegrityViolationException;
+
+public class TransferIdempotencyServiceTest {
+
+    private static final String KEY = "9f1c2b7e-retry";
+
+    private static final Money TEN = Money.of("10.00");
+
+    @Mock
+    private TransferService transferService;
+
+    @Mock
+    private TransferRepository transferRepository;
+
+    @Mock
+    private TransferIdempotencyKeyRepository transferIdempotencyKeyRepository;
+
+    @Spy
+    private BankMetrics bankMetrics = new BankMetrics(new SimpleMeterRegistry());
+
+    @InjectMocks
+    private TransferIdempotencyService transferIdempotencyService =
+            new TransferIdempotencyService(100, 600, bankMetrics);
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        when(transferIdempotencyKeyRepository.findById(any())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    public void testRetryReturnsFirstTransferWithoutExecutingAgain() throws Exception {
+        when(transferService.transferMoney(1L, 2L, TEN, KEY)).thenReturn(transfer(7L, 1L, 2L, TEN));
+
+        TransferResponse first = transferIdempotencyService.transferMoney(KEY, 1L, 2L, TEN);
+        TransferResponse retry = transferIdempotencyService.transferMoney(KEY, 1L, 2L, TEN);
+
+        assertEquals(Long.valueOf(7L), first.getId());
+        assertEquals(first, retry);
+        verify(transferService, times(1)).transferMoney(1L, 2L, TEN, KEY);
+    }
+
+    @Test
+    public void testConcurrentDuplicatesCollapseIntoOneTransfer() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(transferService.transferMoney(1L, 2L, TEN, KEY)).thenAnswer(invocation -> {
+            executing.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return transfer(7L, 1L, 2L, TEN);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<TransferResponse> first = executor.submit(
+                    () -> transferIdempotencyService.transferMoney(KEY, 1L, 2L, TEN));
+            assertTrue(executing.await(5, TimeUnit.SECONDS));
+            Future<TransferResponse> duplicate = executor.submit(
+                    () -> transferIdempotencyService.transferMoney(KEY, 1L, 2L, TEN));
+            release.countDown();
+
+            assertEquals(first.get(5, TimeUnit.SECONDS), duplicate.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(transferService, times(1)).transferMoney(1L, 2L, TEN, KEY);
+    }
+
+    @Test
+    public void testTransferCommittedElsewhereIsReplayedFromTable() throws Exception {
+        TransferIdempotencyKey stored = new TransferIdempotencyKey();
+        stored.setSenderId(1L);
+        stored.setKey(KEY);
+        stored.setTransferId(7L);
+        when(transferService.transferMoney(1L, 2L, TEN, KEY))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(transferIdempotencyKeyRepository.findById(new TransferIdempotencyKeyId(1L, KEY)))
+                .thenReturn(Optional.empty(), Optional.of(stored));
+        TransferResponse response = new TransferResponse(7L, 1L, 2L, TEN, new Date());
+        when(transferRepository.findResponseById(7L)).thenReturn(Optional.of(response));
+
+        assertEquals(response, transferIdempotencyService.transferMoney(KEY, 1L, 2L, TEN));
+    }
+
+    @Test(expected = InvalidTransferException.class)
+    public void testKeyReusedForDifferentTransferIsRejected() throws Exception {
+        when(transferService.transferMoney(1L, 2L, TEN, KEY)).thenReturn(transfer(7L, 1L, 2L, TEN));
+
+        transferIdempotencyService.transferMoney(KEY, 1L, 2L, TEN);
+        transferIdempotencyService.transferMoney(KEY, 1L, 2L, Money.of("1.00"));
+    }
+
+    @Test
+    public void testSameKeyFromAnotherSenderIsAnotherTransfer() throws Exception {
+        when(transferService.transferMoney(1L, 2L, TEN, KEY)).thenReturn(transfer(7L, 1L, 2L, TEN));
+        when(transferService.transferMoney(3L, 2L, TEN, KEY)).thenReturn(transfer(8L, 3L, 2L, TEN));
+
+        assertEquals(Long.valueOf(7L), transferIdempotencyService.transferMoney(KEY, 1L, 2L, TEN).getId());
+        assertEquals(Long.valueOf(8L), transferIdempotencyService.transferMoney(KEY, 3L, 2L, TEN).getId());
+        assertEquals(Long.valueOf(7L), transferIdempotencyService.transferMoney(KEY, 1L, 2L, TEN).getId());
+
+        verify(transferService, times(1)).transferMoney(1L, 2L, TEN, KEY);
+        verify(transferService, times(1)).transferMoney(3L, 2L, TEN, KEY);
+        verify(transferIdempotencyKeyRepository).findById(new TransferIdempotencyKeyId(1L, KEY));
+        verify(transferIdempotencyKeyRepository).findById(new TransferIdempotencyKeyId(3L, KEY));
+    }
+
+    private static Transfer transfer(Long id, Long senderId, Long recipientId, Money amount) {
+        User sender = new User();
+        sender.setId(senderId);
+        User recipient = new User();
+        recipient.setId(recipientId);
+        Transfer transfer = new Transfer();
+        transfer.setId(id);
+        transfer.setSender(sender);
+        transfer.setRecipient(recipient);
+        transfer.setAmount(amount);
+        transfer.setTimestamp(new Date());
+        return transfer;
+    }
+}
@@ -3,22 +3,42 @@ package com.bankoperations.bankoperations;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
-import java.math.BigDecimal;
+import java.util.List;
 import java.util.Optional;
 
+import com.bankoperations.bankoperations.dto.BatchTransferResponse;
+import com.bankoperations.bankoperations.dto.TransferRequest;
+import com.bankoperations.bankoperations.dto.TransferResult;
 import com.bankoperations.bankoperations.entity.BankAccount;
+import com.bankoperations.bankoperations.entity.Money;
 import com.bankoperations.bankoperations.entity.User;
 import com.bankoperations.bankoperations.exception.InsufficientBalanceException;
 import com.bankoperations.bankoperations.exception.InvalidTransferException;
 import com.bankoperations.bankoperations.exception.UserNotFoundException;
+import com.bankoperations.bankoperations.repository.BankAccountRepository;
+import com.bankoperations.bankoperations.repository.TransferBatchWriter;
 import com.bankoperations.bankoperations.repository.TransferRepository;
 import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.AccountLockStripes;
+import com.bankoperations.bankoperations.service.AuditLog;
+import com.bankoperations.bankoperations.service.BankMetrics;
+import com.bankoperations.bankoperations.service.HotAccountService;
+import com.bankoperations.bankoperations.service.LedgerService;
+import com.bankoperations.bankoperations.service.TransferRetryTemplate;
+import com.bankoperations.bankoperations.service.TransferMode;
 import com.bankoperations.bankoperations.service.TransferService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 public class TransferServiceTest {
 
@@ -28,6 +48,33 @@ public class TransferServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private BankAccountRepository bankAccountRepository;
+
+    @Mock
+    private TransferBatchWriter transferBatchWriter;
+
+    @Mock
+    private HotAccountService hotAccountService;
+
+    @Mock
+    private LedgerService ledgerService;
+
+    @Mock
+    private AuditLog auditLog;
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private BankMetrics bankMetrics = new BankMetrics(meterRegistry);
+
+    @Spy
+    private TransferRetryTemplate transferRetryTemplate =
+            new TransferRetryTemplate(mock(PlatformTransactionManager.class), 3, 0, 0, bankMetrics);
+
+    @Spy
+    private AccountLockStripes accountLockStripes = new AccountLockStripes(true, 16);
+
     @InjectMocks
     private TransferService transferService;
 
@@ -40,7 +87,7 @@ public class TransferServiceTest {
     public void testTransferMoneyToSameAccount() throws InsufficientBalanceException, UserNotFoundException,
             InvalidTransferException {
         Long senderId = 1L;
-        BigDecimal amount = BigDecimal.valueOf(100.0);
+        Money amount = Money.of("100.00");
         transferService.transferMoney(senderId, senderId, amount);
     }
 
@@ -49,8 +96,8 @@ public class TransferServiceTest {
             InvalidTransferException {
         Long senderId = 1L;
         Long recipientId = 2L;
-        BigDecimal amount = BigDecimal.valueOf(100.0);
-        when(userRepository.findById(senderId)).thenReturn(Optional.empty());
+        Money amount = Money.of("100.00");
+        when(userRepository.findByIdForUpdate(senderId)).thenReturn(Optional.empty());
         transferService.transferMoney(senderId, recipientId, amount);
     }
 
@@ -59,9 +106,9 @@ public class TransferServiceTest {
             InvalidTransferException {
         Long senderId = 1L;
         Long recipientId = 2L;
-        BigDecimal amount = BigDecimal.valueOf(100.0);
-        when(userRepository.findById(senderId)).thenReturn(Optional.of(new User()));
-        when(userRepository.findById(recipientId)).thenReturn(Optional.empty());
+        Money amount = Money.of("100.00");
+        when(userRepository.findByIdForUpdate(senderId)).thenReturn(Optional.of(new User()));
+        when(userRepository.findByIdForUpdate(recipientId)).thenReturn(Optional.empty());
         transferService.transferMoney(senderId, recipientId, amount);
     }
 
@@ -70,26 +117,49 @@ public class TransferServiceTest {
             InvalidTransferException {
         Long senderId = 1L;
         Long recipientId = 2L;
-        BigDecimal senderBalance = BigDecimal.valueOf(50.0);
-        BigDecimal amount = BigDecimal.valueOf(100.0);
+        Money senderBalance = Money.of("50.00");
+        Money amount = Money.of("100.00");
         User sender = new User();
         sender.setId(senderId);
         BankAccount senderAccount = new BankAccount();
         senderAccount.setBalance(senderBalance);
         sender.setBankAccount(senderAccount);
-        when(userRepository.findById(senderId)).thenReturn(Optional.of(sender));
-        when(userRepository.findById(recipientId)).thenReturn(Optional.of(new User()));
+        when(userRepository.findByIdForUpdate(senderId)).thenReturn(Optional.of(sender));
+        when(userRepository.findByIdForUpdate(recipientId)).thenReturn(Optional.of(new User()));
         transferService.transferMoney(senderId, recipientId, amount);
     }
 
+    @Test
+    public void testTransferLatencyIsRecordedByOutcome() throws UserNotFoundException, InvalidTransferException {
+        Long senderId = 1L;
+        Long recipientId = 2L;
+        User sender = new User();
+        sender.setId(senderId);
+        BankAccount senderAccount = new BankAccount();
+        senderAccount.setBalance(Money.of("50.00"));
+        sender.setBankAccount(senderAccount);
+        when(userRepository.findByIdForUpdate(senderId)).thenReturn(Optional.of(sender));
+        when(userRepository.findByIdForUpdate(recipientId)).thenReturn(Optional.of(new User()));
+
+        try {
+            transferService.transferMoney(senderId, recipientId, Money.of("100.00"));
+            fail("Expected InsufficientBalanceException");
+        } catch (InsufficientBalanceException expected) {
+        }
+
+        assertEquals(1, meterRegistry.get("bank.transfer").tag("outcome", "insufficient_funds").timer().count());
+        assertEquals(0, meterRegistry.get("bank.transfer").tag("outcome", "ok").timer().count());
+        assertEquals(2, meterRegistry.get("bank.transfer.lock.wait").timer().count());
+    }
+
     @Test
     public void testTransferMoneySuccessful() throws InsufficientBalanceException, UserNotFoundException,
             InvalidTransferException {
         Long senderId = 1L;
         Long recipientId = 2L;
-        BigDecimal senderBalance = BigDecimal.valueOf(200.0);
-        BigDecimal recipientBalance = BigDecimal.valueOf(100.0);
-        BigDecimal amount = BigDecimal.valueOf(50.0);
+        Money senderBalance = Money.of("200.00");
+        Money recipientBalance = Money.of("100.00");
+        Money amount = Money.of("50.00");
         User sender = new User();
         sender.setId(senderId);
         BankAccount senderAccount = new BankAccount();
@@ -100,10 +170,249 @@ public class TransferServiceTest {
         BankAccount recipientAccount = new BankAccount();
         recipientAccount.setBalance(recipientBalance);
         recipient.setBankAccount(recipientAccount);
-        when(userRepository.findById(senderId)).thenReturn(Optional.of(sender));
+        when(userRepository.findByIdForUpdate(senderId)).thenReturn(Optional.of(sender));
+        when(userRepository.findByIdForUpdate(recipientId)).thenReturn(Optional.of(recipient));
+        transferService.transferMoney(senderId, recipientId, amount);
+        assertEquals(senderBalance.minus(amount), sender.getBankAccount().getBalance());
+        assertEquals(recipientBalance.plus(amount), recipient.getBankAccount().getBalance());
+    }
+
+    @Test
+    public void testTransferMoneyLocksAccountsInAscendingOrder() throws InsufficientBalanceException,
+            UserNotFoundException, InvalidTransferException {
+        Long senderId = 2L;
+        Long recipientId = 1L;
+        User sender = new User();
+        sender.setId(senderId);
+        BankAccount senderAccount = new BankAccount();
+        senderAccount.setBalance(Money.of("200.00"));
+        sender.setBankAccount(senderAccount);
+        User recipient = new User();
+        recipient.setId(recipientId);
+        BankAccount recipientAccount = new BankAccount();
+        recipientAccount.setBalance(Money.of("100.00"));
+        recipient.setBankAccount(recipientAccount);
+        when(userRepository.findByIdForUpdate(senderId)).thenReturn(Optional.of(sender));
+        when(userRepository.findByIdForUpdate(recipientId)).thenReturn(Optional.of(recipient));
+        transferService.transferMoney(senderId, recipientId, Money.of("50.00"));
+        InOrder inOrder = inOrder(userRepository);
+        inOrder.verify(userRepository).findByIdForUpdate(recipientId);
+        inOrder.verify(userRepository).findByIdForUpdate(senderId);
+    }
+
+    @Test
+    public void testTransferMoneyRetriesAfterDeadlock() throws InsufficientBalanceException, UserNotFoundException,
+            InvalidTransferException {
+        Long senderId = 1L;
+        Long recipientId = 2L;
+        User sender = new User();
+        sender.setId(senderId);
+        BankAccount senderAccount = new BankAccount();
+        senderAccount.setBalance(Money.of("200.00"));
+        sender.setBankAccount(senderAccount);
+        User recipient = new User();
+        recipient.setId(recipientId);
+        BankAccount recipientAccount = new BankAccount();
+        recipientAccount.setBalance(Money.of("100.00"));
+        recipient.setBankAccount(recipientAccount);
+        when(userRepository.findByIdForUpdate(senderId))
+                .thenThrow(new CannotAcquireLockException("deadlock detected"))
+                .thenReturn(Optional.of(sender));
+        when(userRepository.findByIdForUpdate(recipientId)).thenReturn(Optional.of(recipient));
+        transferService.transferMoney(senderId, recipientId, Money.of("50.00"));
+        verify(userRepository, times(2)).findByIdForUpdate(senderId);
+        assertEquals(Money.of("150.00"), sender.getBankAccount().getBalance());
+        assertEquals(1.0, meterRegistry.get("bank.transfer.retries")
+                .tag("reason", BankMetrics.RETRY_LOCK_FAILURE).counter().count(), 0.0);
+    }
+
+    @Test
+    public void testTransferBatchAppliesNetDeltasAndReportsEachTransfer() throws InvalidTransferException {
+        User first = new User();
+        first.setId(1L);
+        BankAccount firstAccount = new BankAccount();
+        firstAccount.setBalance(Money.of("100.00"));
+        first.setBankAccount(firstAccount);
+        User second = new User();
+        second.setId(2L);
+        BankAccount secondAccount = new BankAccount();
+        secondAccount.setBalance(Money.of("10.00"));
+        second.setBankAccount(secondAccount);
+        when(userRepository.findAllByIdForUpdate(any())).thenReturn(List.of(first, second));
+
+        BatchTransferResponse response = transferService.transferBatch(List.of(
+                new TransferRequest(1L, 2L, Money.of("60.00")),
+                new TransferRequest(1L, 2L, Money.of("60.00")),
+                new TransferRequest(2L, 1L, Money.of("30.00")),
+                new TransferRequest(1L, 3L, Money.of("1.00"))));
+
+        assertEquals(2, response.getCompleted());
+        assertEquals(2, response.getRejected());
+        assertEquals(TransferResult.Status.COMPLETED, response.getResults().get(0).getStatus());
+        assertEquals(TransferResult.Status.REJECTED, response.getResults().get(1).getStatus());
+        assertEquals(TransferResult.Status.COMPLETED, response.getResults().get(2).getStatus());
+        assertEquals("Recipient not found", response.getResults().get(3).getMessage());
+        assertEquals(Money.of("70.00"), first.getBankAccount().getBalance());
+        assertEquals(Money.of("40.00"), second.getBankAccount().getBalance());
+        verify(userRepository, times(1)).findAllByIdForUpdate(any());
+        verify(transferBatchWriter).insertAll(argThat(transfers -> transfers.size() == 2), anyInt());
+    }
+
+    @Test
+    public void testTransferMoneyToStripedAccountCreditsSlotWithoutLockingRecipient()
+            throws InsufficientBalanceException, UserNotFoundException, InvalidTransferException {
+        Long senderId = 1L;
+        Long recipientId = 2L;
+        User sender = new User();
+        sender.setId(senderId);
+        BankAccount senderAccount = new BankAccount();
+        senderAccount.setBalance(Money.of("200.00"));
+        sender.setBankAccount(senderAccount);
+        User recipient = new User();
+        recipient.setId(recipientId);
+        BankAccount recipientAccount = new BankAccount();
+        recipientAccount.setBalance(Money.of("100.00"));
+        recipientAccount.setSlotCount(4);
+        recipient.setBankAccount(recipientAccount);
+        when(hotAccountService.isStriped(recipientId)).thenReturn(true);
+        when(userRepository.findByIdForUpdate(senderId)).thenReturn(Optional.of(sender));
         when(userRepository.findById(recipientId)).thenReturn(Optional.of(recipient));
+        transferService.transferMoney(senderId, recipientId, Money.of("50.00"));
+        verify(userRepository, never()).findByIdForUpdate(recipientId);
+        verify(hotAccountService).credit(recipientAccount, Money.of("50.00"));
+        assertEquals(Money.of("100.00"), recipient.getBankAccount().getBalance());
+        assertEquals(Money.of("150.00"), sender.getBankAccount().getBalance());
+    }
+
+    @Test
+    public void testTransferMoneyBetweenStripedAccountsLocksSlotsInAccountOrder()
+            throws InsufficientBalanceException, UserNotFoundException, InvalidTransferException {
+        Long senderId = 1L;
+        Long recipientId = 2L;
+        User sender = new User();
+        sender.setId(senderId);
+        BankAccount senderAccount = new BankAccount();
+        senderAccount.setId(20L);
+        senderAccount.setBalance(Money.of("200.00"));
+        senderAccount.setSlotCount(4);
+        sender.setBankAccount(senderAccount);
+        User recipient = new User();
+        recipient.setId(recipientId);
+        BankAccount recipientAccount = new BankAccount();
+        recipientAccount.setId(10L);
+        recipientAccount.setBalance(Money.of("100.00"));
+        recipientAccount.setSlotCount(4);
+        recipient.setBankAccount(recipientAccount);
+        when(hotAccountService.isStriped(recipientId)).thenReturn(true);
+        when(userRepository.findByIdForUpdate(senderId)).thenReturn(Optional.of(sender));
+        when(userRepository.findById(recipientId)).thenReturn(Optional.of(recipient));
+        transferService.transferMoney(senderId, recipientId, Money.of("50.00"));
+        InOrder inOrder = inOrder(hotAccountService);
+        inOrder.verify(hotAccountService).lockSlots(recipientAccount);
+        inOrder.verify(hotAccountService).consolidate(senderAccount);
+        inOrder.verify(hotAccountService).credit(recipientAccount, Money.of("50.00"));
+
+        // The other way round the sender's slots come first anyway.
+        senderAccount.setId(5L);
+        transferService.transferMoney(senderId, recipientId, Money.of("50.00"));
+        verify(hotAccountService, times(1)).lockSlots(any());
+    }
+
+    @Test
+    public void testTransferMoneyInLedgerModeAppendsEntries() throws InsufficientBalanceException,
+            UserNotFoundException, InvalidTransferException {
+        ReflectionTestUtils.setField(transferService, "transferMode", TransferMode.LEDGER);
+        Long senderId = 1L;
+        Long recipientId = 2L;
+        User sender = new User();
+        sender.setId(senderId);
+        BankAccount senderAccount = new BankAccount();
+        senderAccount.setBalance(Money.of("10.00"));
+        sender.setBankAccount(senderAccount);
+        User recipient = new User();
+        recipient.setId(recipientId);
+        BankAccount recipientAccount = new BankAccount();
+        recipientAccount.setBalance(Money.of("100.00"));
+        recipient.setBankAccount(recipientAccount);
+        when(userRepository.findByIdForUpdate(senderId)).thenReturn(Optional.of(sender));
+        when(userRepository.findByIdForShare(recipientId)).thenReturn(Optional.of(recipient));
+        when(ledgerService.currentBalance(senderAccount)).thenReturn(Money.of("200.00"));
+        transferService.transferMoney(senderId, recipientId, Money.of("50.00"));
+        verify(userRepository, never()).findByIdForUpdate(recipientId);
+        verify(ledgerService).recordTransfer(any());
+        assertEquals(Money.of("10.00"), sender.getBankAccount().getBalance());
+        assertEquals(Money.of("100.00"), recipient.getBankAccount().getBalance());
+    }
+
+    @Test
+    public void testTransferMoneyInConditionalModeUpdatesInIdOrderWithoutLocking() throws InsufficientBalanceException,
+            UserNotFoundException, InvalidTransferException {
+        ReflectionTestUtils.setField(transferService, "transferMode", TransferMode.CONDITIONAL);
+        Long senderId = 2L;
+        Long recipientId = 1L;
+        Money amount = Money.of("50.00");
+        when(bankAccountRepository.debit(senderId, amount.toBigDecimal())).thenReturn(1);
+        when(bankAccountRepository.credit(recipientId, amount.toBigDecimal())).thenReturn(1);
+        when(userRepository.getReferenceById(any())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(invocation.getArgument(0));
+            return user;
+        });
+        transferService.transferMoney(senderId, recipientId, amount);
+        InOrder inOrder = inOrder(bankAccountRepository);
+        inOrder.verify(bankAccountRepository).credit(recipientId, amount.toBigDecimal());
+        inOrder.verify(bankAccountRepository).debit(senderId, amount.toBigDecimal());
+        verify(userRepository, never()).findByIdForUpdate(any());
+        verify(transferRepository).save(any());
+    }
+
+    @Test(expected = InsufficientBalanceException.class)
+    public void testTransferMoneyInConditionalModeInsufficientBalance() throws InsufficientBalanceException,
+            UserNotFoundException, InvalidTransferException {
+        ReflectionTestUtils.setField(transferService, "transferMode", TransferMode.CONDITIONAL);
+        Long senderId = 1L;
+        Long recipientId = 2L;
+        Money amount = Money.of("50.00");
+        when(bankAccountRepository.debit(senderId, amount.toBigDecimal())).thenReturn(0);
+        when(userRepository.existsById(senderId)).thenReturn(true);
+        transferService.transferMoney(senderId, recipientId, amount);
+    }
+
+    @Test
+    public void testTransferMoneyInConditionalModeRejectsNonPositiveAmount() throws InsufficientBalanceException,
+            UserNotFoundException {
+        ReflectionTestUtils.setField(transferService, "transferMode", TransferMode.CONDITIONAL);
+        for (String amount : new String[]{"0.00", "-50.00"}) {
+            try {
+                transferService.transferMoney(1L, 2L, Money.of(amount));
+                fail("Expected " + amount + " to be rejected");
+            } catch (InvalidTransferException e) {
+                assertEquals("Transfer amount must be positive", e.getMessage());
+            }
+        }
+        verifyNoInteractions(bankAccountRepository, transferRepository);
+    }
+
+    @Test
+    public void testTransferMoneyRetriesOnStaleVersion() throws InsufficientBalanceException,
+            UserNotFoundException, InvalidTransferException {
+        ReflectionTestUtils.setField(transferService, "transferMode", TransferMode.CONDITIONAL);
+        Long senderId = 1L;
+        Long recipientId = 2L;
+        Money amount = Money.of("50.00");
+        when(bankAccountRepository.debit(senderId, amount.toBigDecimal()))
+                .thenThrow(new OptimisticLockingFailureException("stale bank account"))
+                .thenReturn(1);
+        when(bankAccountRepository.credit(recipientId, amount.toBigDecimal())).thenReturn(1);
+        when(userRepository.getReferenceById(any())).thenAnswer(invocation -> {
+            User user = new User();
+            user.setId(invocation.getArgument(0));
+            return user;
+        });
         transferService.transferMoney(senderId, recipientId, amount);
-        assertEquals(senderBalance.subtract(amount), sender.getBankAccount().getBalance());
-        assertEquals(recipientBalance.add(amount), recipient.getBankAccount().getBalance());
+        verify(bankAccountRepository, times(2)).debit(senderId, amount.toBigDecimal());
+        verify(bankAccountRepository).credit(recipientId, amount.toBigDecimal());
+        assertEquals(1.0, meterRegistry.get("bank.transfer.retries")
+                .tag("reason", BankMetrics.RETRY_OPTIMISTIC_LOCK).counter().count(), 0.0);
     }
 }
@@ -0,0 +1,322 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.exception.InsufficientBalanceException;
+import com.bankoperations.bankoperations.service.LedgerCompactionService;
+import com.bankoperations.bankoperations.service.TransferIdempotencyService;
+import com.bankoperations.bankoperations.service.TransferService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Hammers {@link TransferService#transferMoney} from many threads on an embedded database and
+ * checks afterwards that no money was created or lost. Excluded from the default build, run with
+ * {@code mvn -P stress test}; {@code -Dbank.stress.transfer-mode} picks the transfer mode. Every
+ * run prints throughput, latency percentiles, retries by reason and the time spent waiting for
+ * row locks.
+ */
+public class TransferStressTest {
+
+    private static final int THREADS = Integer.getInteger("bank.stress.threads", 16);
+
+    private static final int DURATION_SECONDS = Integer.getInteger("bank.stress.duration-seconds", 20);
+
+    private static final int ACCOUNTS = Integer.getInteger("bank.stress.accounts", 200);
+
+    private static final String TRANSFER_MODE = System.getProperty("bank.stress.transfer-mode", "locking");
+
+    /**
+     * Accounts that take part in most transfers of the skewed run.
+     */
+    private static final int HOT_ACCOUNTS = 4;
+
+    private static final Money INITIAL_BALANCE = Money.of("100.00");
+
+    private static ConfigurableApplicationContext context;
+
+    private static TransferService transferService;
+
+    private static TransferIdempotencyService transferIdempotencyService;
+
+    private static MeterRegistry meterRegistry;
+
+    private static List<Long> userIds;
+
+    private static Money initialTotal;
+
+    private Map<String, Double> retriesByReasonBefore;
+
+    private long lockWaitsBefore;
+
+    private double lockWaitSecondsBefore;
+
+    @BeforeClass
+    public static void startBank() {
+        context = EmbeddedBank.start("--bank.transfer.mode=" + TRANSFER_MODE);
+        transferService = context.getBean(TransferService.class);
+        transferIdempotencyService = context.getBean(TransferIdempotencyService.class);
+        meterRegistry = context.getBean(MeterRegistry.class);
+        userIds = EmbeddedBank.seedUsers(context, ACCOUNTS, INITIAL_BALANCE);
+        initialTotal = Money.ofMinor(INITIAL_BALANCE.getMinorUnits() * ACCOUNTS);
+    }
+
+    @AfterClass
+    public static void stopBank() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Before
+    public void snapshotMeters() {
+        retriesByReasonBefore = retriesByReason();
+        Timer lockWait = meterRegistry.get("bank.transfer.lock.wait").timer();
+        lockWaitsBefore = lockWait.count();
+        lockWaitSecondsBefore = lockWait.totalTime(TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testRandomPairsConserveMoney() throws Exception {
+        run("random pairs", () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int sender = random.nextInt(ACCOUNTS);
+            int recipient = (sender + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+            return new int[]{sender, recipient};
+        });
+        assertBalancesConsistent();
+    }
+
+    @Test
+    public void testSkewedPairsConserveMoney() throws Exception {
+        // Nine transfers out of ten touch one of a few hot accounts, in either direction.
+        run("skewed pairs", () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int hot = random.nextInt(HOT_ACCOUNTS);
+            int other = random.nextInt(10) < 9 ? random.nextInt(ACCOUNTS) : random.nextInt(HOT_ACCOUNTS, ACCOUNTS);
+            if (other == hot) {
+                other = (hot + 1) % ACCOUNTS;
+            }
+            return random.nextBoolean() ? new int[]{hot, other} : new int[]{other, hot};
+        });
+        assertBalancesConsistent();
+    }
+
+    @Test
+    public void testDuplicateIdempotencyKeysMoveMoneyOnce() throws Exception {
+        EntityManager entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+        long transfersBefore;
+        try {
+            transfersBefore = entityManager.createQuery("SELECT COUNT(t) FROM Transfer t", Long.class).getSingleResult();
+        } finally {
+            entityManager.close();
+        }
+
+        // Every key is sent by all threads at once, as a client retrying on timeouts would.
+        int keys = 50;
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < keys; i++) {
+                String key = UUID.randomUUID().toString();
+                Long sender = userIds.get(ThreadLocalRandom.current().nextInt(HOT_ACCOUNTS));
+                Long recipient = userIds.get(HOT_ACCOUNTS + i % (ACCOUNTS - HOT_ACCOUNTS));
+                List<Future<Long>> duplicates = new ArrayList<>();
+                for (int t = 0; t < THREADS; t++) {
+                    duplicates.add(executor.submit(() -> {
+                        try {
+                            return transferIdempotencyService.transferMoney(key, sender, recipient, Money.of("1.00")).getId();
+                        } catch (InsufficientBalanceException e) {
+                            return null;
+                        }
+                    }));
+                }
+                Long transferId = duplicates.get(0).get();
+                for (Future<Long> duplicate : duplicates) {
+                    assertEquals(transferId, duplicate.get());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+        try {
+            long transfers = entityManager.createQuery("SELECT COUNT(t) FROM Transfer t", Long.class).getSingleResult();
+            assertTrue("More transfers than idempotency keys", transfers - transfersBefore <= keys);
+        } finally {
+            entityManager.close();
+        }
+        assertBalancesConsistent();
+    }
+
+    private void run(String name, PairGenerator pairs) throws Exception {
+        AtomicLong completed = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        List<Throwable> errors = new ArrayList<>();
+        List<List<Long>> latencies = new ArrayList<>();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        List<Future<List<Long>>> workers = new ArrayList<>();
+        long start = System.nanoTime();
+        Future<?> compactor = null;
+        if ("ledger".equals(TRANSFER_MODE)) {
+            // Compaction runs alongside the transfers, as the scheduled job would, only back to back.
+            LedgerCompactionService ledgerCompactionService = context.getBean(LedgerCompactionService.class);
+            compactor = executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    ledgerCompactionService.compact();
+                }
+            });
+        }
+        for (int i = 0; i < THREADS; i++) {
+            workers.add(executor.submit(() -> {
+                List<Long> workerLatencies = new ArrayList<>();
+                while (System.nanoTime() < deadline) {
+                    int[] pair = pairs.next();
+                    Money amount = Money.ofMinor(ThreadLocalRandom.current().nextInt(1, 51) * 100L);
+                    long transferStart = System.nanoTime();
+                    try {
+                        transferService.transferMoney(userIds.get(pair[0]), userIds.get(pair[1]), amount);
+                        completed.incrementAndGet();
+                    } catch (InsufficientBalanceException e) {
+                        rejected.incrementAndGet();
+                    } catch (Exception e) {
+                        synchronized (errors) {
+                            errors.add(e);
+                        }
+                    }
+                    workerLatencies.add(System.nanoTime() - transferStart);
+                }
+                return workerLatencies;
+            }));
+        }
+        for (Future<List<Long>> worker : workers) {
+            latencies.add(worker.get());
+        }
+        if (compactor != null) {
+            compactor.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        executor.shutdown();
+
+        long[] sorted = latencies.stream().flatMap(List::stream).mapToLong(Long::longValue).sorted().toArray();
+        Map<String, Double> retriesByReason = retriesByReason();
+        retriesByReason.replaceAll((reason, count) -> count - retriesByReasonBefore.getOrDefault(reason, 0.0));
+        double retries = retriesByReason.values().stream().mapToDouble(Double::doubleValue).sum();
+        Timer lockWait = meterRegistry.get("bank.transfer.lock.wait").timer();
+        long lockWaits = lockWait.count() - lockWaitsBefore;
+        double lockWaitSeconds = lockWait.totalTime(TimeUnit.SECONDS) - lockWaitSecondsBefore;
+
+        System.out.printf("%n[%s] %d threads, %d accounts, %d s%n", name, THREADS, ACCOUNTS, DURATION_SECONDS);
+        System.out.printf("  transfers:  %d completed, %d rejected for funds, %d failed%n",
+                completed.get(), rejected.get(), errors.size());
+        System.out.printf("  throughput: %.1f transfers/s%n", sorted.length / (elapsed / 1e9));
+        System.out.printf("  latency:    p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                percentile(sorted, 0.50) / 1e6, percentile(sorted, 0.99) / 1e6,
+                sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1e6);
+        System.out.printf("  retries:    %.0f %s%n", retries, retriesByReason);
+        System.out.printf("  lock wait:  %.2f s over %d acquisitions, mean %.3f ms%n",
+                lockWaitSeconds, lockWaits, lockWaits == 0 ? 0.0 : lockWaitSeconds * 1e3 / lockWaits);
+
+        if (!errors.isEmpty()) {
+            errors.get(0).printStackTrace();
+        }
+        assertTrue("Unexpected transfer failures: " + errors.size(), errors.isEmpty());
+        assertTrue("No transfer completed", completed.get() > 0);
+    }
+
+    /**
+     * The total is unchanged, no balance is negative, and every balance equals its initial
+     * value plus what the account received minus what it sent according to the transfers table.
+     * In ledger mode the ledger is compacted first, so the snapshots are the balances.
+     */
+    private void assertBalancesConsistent() {
+        if ("ledger".equals(TRANSFER_MODE)) {
+            context.getBean(LedgerCompactionService.class).compact();
+        }
+        EntityManager entityManager = context.getBean(EntityManagerFactory.class).createEntityManager();
+        try {
+            // Native sums, JPQL has no arithmetic for the converted Money attributes.
+            Money total = money(entityManager.createNativeQuery(
+                    "SELECT SUM(balance) FROM bank_accounts").getSingleResult());
+            Money slots = money(entityManager.createNativeQuery(
+                    "SELECT COALESCE(SUM(balance), 0) FROM bank_account_slots").getSingleResult());
+            assertEquals("Money was created or lost", initialTotal, total.plus(slots));
+
+            Long negative = entityManager.createQuery(
+                    "SELECT COUNT(a) FROM BankAccount a WHERE a.balance < :zero", Long.class)
+                    .setParameter("zero", Money.ZERO).getSingleResult();
+            assertEquals("Accounts with a negative balance", 0L, negative.longValue());
+
+            Map<Long, Money> expected = new HashMap<>();
+            for (Long userId : userIds) {
+                expected.put(userId, INITIAL_BALANCE);
+            }
+            for (Object row : entityManager.createNativeQuery(
+                    "SELECT sender_id, SUM(amount) FROM transfers GROUP BY sender_id").getResultList()) {
+                Object[] columns = (Object[]) row;
+                expected.merge(((Number) columns[0]).longValue(), money(columns[1]).negate(), Money::plus);
+            }
+            for (Object row : entityManager.createNativeQuery(
+                    "SELECT recipient_id, SUM(amount) FROM transfers GROUP BY recipient_id").getResultList()) {
+                Object[] columns = (Object[]) row;
+                expected.merge(((Number) columns[0]).longValue(), money(columns[1]), Money::plus);
+            }
+            for (Object[] row : entityManager.createQuery(
+                    "SELECT a.user.id, a.balance FROM BankAccount a", Object[].class).getResultList()) {
+                assertEquals("Balance of user " + row[0] + " does not match its transfers",
+                        expected.get((Long) row[0]), row[1]);
+            }
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private static Money money(Object sum) {
+        return Money.of(new BigDecimal(sum.toString()), RoundingMode.HALF_UP);
+    }
+
+    private static Map<String, Double> retriesByReason() {
+        Map<String, Double> retries = new HashMap<>();
+        for (Counter counter : meterRegistry.find("bank.transfer.retries").counters()) {
+            retries.put(counter.getId().getTag("reason"), counter.count());
+        }
+        return retries;
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private interface PairGenerator {
+        int[] next();
+    }
+}
@@ -0,0 +1,106 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.Optional;
+
+import com.bankoperations.bankoperations.dto.AuthenticatedUser;
+import com.bankoperations.bankoperations.dto.UpdateEmailRequest;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.exception.InvalidUserException;
+import com.bankoperations.bankoperations.exception.UserNotFoundException;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.UserDetailsCache;
+import com.bankoperations.bankoperations.service.UserKeyFilters;
+import com.bankoperations.bankoperations.service.UserSearchIndex;
+import com.bankoperations.bankoperations.service.UserService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class UserDetailsCacheTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserSearchIndex userSearchIndex;
+
+    @Mock
+    private UserKeyFilters userKeyFilters;
+
+    @Spy
+    private UserDetailsCache userDetailsCache = new UserDetailsCache(100, 300);
+
+    @InjectMocks
+    private UserService userService;
+
+    private UserDetailsService userDetailsService;
+
+    private User alice;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        userDetailsService = userService.userDetailsService();
+        alice = EmbeddedBank.newUser("alice");
+        alice.setId(1L);
+        when(userRepository.findByUsernameOnPrimary("alice")).thenReturn(alice);
+        when(userRepository.findById(1L)).thenReturn(Optional.of(alice));
+        when(userRepository.save(alice)).thenReturn(alice);
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testLookupIsCached() {
+        AuthenticatedUser first = (AuthenticatedUser) userDetailsService.loadUserByUsername("alice");
+        AuthenticatedUser second = (AuthenticatedUser) userDetailsService.loadUserByUsername("alice");
+        assertSame(first, second);
+        assertEquals(Long.valueOf(1L), first.getId());
+        verify(userRepository, times(1)).findByUsernameOnPrimary("alice");
+    }
+
+    @Test
+    public void testContactChangeEvictsOnlyOnCommit() throws UserNotFoundException, InvalidUserException {
+        userDetailsService.loadUserByUsername("alice");
+
+        TransactionSynchronizationManager.initSynchronization();
+        UpdateEmailRequest request = new UpdateEmailRequest();
+        request.setNewEmail("alice@example.org");
+        userService.updateEmail(1L, request);
+        // Evicting now would let a concurrent lookup cache the row the transaction is replacing.
+        assertNotNull(userDetailsCache.get("alice"));
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertNull(userDetailsCache.get("alice"));
+        AuthenticatedUser reloaded = (AuthenticatedUser) userDetailsService.loadUserByUsername("alice");
+        assertEquals("alice@example.org", reloaded.getEmail());
+    }
+
+    @Test
+    public void testRowReadBeforeEvictionIsNotCached() {
+        // The change commits and evicts while the lookup is reading the old row.
+        when(userRepository.findByUsernameOnPrimary("alice")).thenAnswer(invocation -> {
+            userDetailsCache.evict("alice");
+            return alice;
+        });
+        assertNotNull(userDetailsService.loadUserByUsername("alice"));
+        assertNull(userDetailsCache.get("alice"));
+    }
+}
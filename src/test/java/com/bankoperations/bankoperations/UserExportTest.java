@@ -0,0 +1,167 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import com.bankoperations.bankoperations.controller.UserController;
+import com.bankoperations.bankoperations.dto.UserResponse;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+
+/**
+ * NDJSON export of users in keyset pages of three.
+ */
+public class UserExportTest {
+
+    private static final int PAGE_SIZE = 3;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @InjectMocks
+    private UserService userService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<UserResponse> users = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(userService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(userService, "exportPageSize", PAGE_SIZE);
+        when(userRepository.findResponsesAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return users.stream().filter(user -> user.getId() > afterId).limit(pageable.getPageSize()).toList();
+        });
+    }
+
+    @Test
+    public void testPagesFollowLastIdOfPreviousPage() throws Exception {
+        addUsers(7);
+
+        List<UserResponse> exported = export(7);
+
+        assertEquals(users, exported);
+        verify(userRepository).findResponsesAfter(eq(0L), argThat(pageable -> pageable.getPageSize() == PAGE_SIZE));
+        verify(userRepository).findResponsesAfter(eq(users.get(2).getId()), any(Pageable.class));
+        verify(userRepository).findResponsesAfter(eq(users.get(5).getId()), any(Pageable.class));
+        verify(userRepository, times(3)).findResponsesAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void testEveryPageIsReadInItsOwnReadOnlyTransaction() throws Exception {
+        addUsers(7);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        when(userRepository.findResponsesAfter(eq(users.get(2).getId()), any(Pageable.class))).thenAnswer(invocation -> {
+            // The first page was committed before it went out to the client.
+            verify(transactionManager).commit(any());
+            assertTrue(outputStream.size() > 0);
+            return users.subList(3, 6);
+        });
+
+        assertEquals(7, userService.exportUsers(outputStream));
+        verify(transactionManager, times(3)).getTransaction(argThat(TransactionDefinition::isReadOnly));
+        verify(transactionManager, times(3)).commit(any());
+    }
+
+    @Test
+    public void testFullLastPageIsFollowedByAnEmptyOne() throws Exception {
+        addUsers(6);
+
+        assertEquals(users, export(6));
+        verify(userRepository).findResponsesAfter(eq(users.get(5).getId()), any(Pageable.class));
+        verify(userRepository, times(3)).findResponsesAfter(anyLong(), any(Pageable.class));
+    }
+
+    @Test
+    public void testNoUsersIsAnEmptyBody() throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(0, userService.exportUsers(outputStream));
+        assertEquals(0, outputStream.size());
+    }
+
+    @Test
+    public void testEndpointStreamsNdjson() throws Exception {
+        addUsers(4);
+        UserController userController = new UserController();
+        ReflectionTestUtils.setField(userController, "userService", userService);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(userController).build();
+
+        MvcResult started = mockMvc.perform(get("/api/getAllUsers").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String body = mockMvc.perform(asyncDispatch(started))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn()
+                .getResponse()
+                .getContentAsString(StandardCharsets.UTF_8);
+
+        assertEquals(users, parse(body, 4));
+    }
+
+    private List<UserResponse> export(int expected) throws Exception {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        assertEquals(expected, userService.exportUsers(outputStream));
+        return parse(outputStream.toString(StandardCharsets.UTF_8), expected);
+    }
+
+    /**
+     * Checks the framing, one JSON object per line and a newline after the last one, and reads
+     * the records back.
+     */
+    private List<UserResponse> parse(String body, int expected) throws Exception {
+        assertTrue(body.endsWith("\n"));
+        String[] lines = body.split("\n", -1);
+        assertEquals(expected + 1, lines.length);
+        assertEquals("", lines[expected]);
+
+        List<UserResponse> parsed = new ArrayList<>();
+        for (int i = 0; i < expected; i++) {
+            assertTrue(lines[i], lines[i].startsWith("{") && lines[i].endsWith("}"));
+            parsed.add(objectMapper.readValue(lines[i], UserResponse.class));
+        }
+        return parsed;
+    }
+
+    private void addUsers(int count) {
+        for (int i = 0; i < count; i++) {
+            // Ids with gaps, as the pooled sequence leaves them.
+            long id = 10L + i * 7;
+            users.add(new UserResponse(id, "user" + id, "User " + id, "user" + id + "@example.com",
+                    "+1555" + id, new Date(id * 86_400_000L), Money.of("100.0" + i % 10)));
+        }
+    }
+}
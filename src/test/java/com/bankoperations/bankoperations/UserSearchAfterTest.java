@@ -0,0 +1,111 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import com.bankoperations.bankoperations.dto.UserResponse;
+import com.bankoperations.bankoperations.dto.UserSearchPage;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.UserService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keyset pages of {@link UserService#searchUsersAfter} over sort keys shared by several users,
+ * with pages capped at four users.
+ */
+public class UserSearchAfterTest {
+
+    private static final int MAX_PAGE_SIZE = 4;
+
+    private static final String[] FULL_NAMES = {"Petrov Ivan", "Ivanov Ivan", "Sidorov Oleg", "Ivanov Ivan",
+            "Petrov Ivan", "Ivanov Ivan", "Orlov Pavel", "Ivanov Ivan", "Petrov Ivan", "Sidorov Oleg", "Ivanov Ivan"};
+
+    private static ConfigurableApplicationContext context;
+
+    private static UserService userService;
+
+    private static final List<User> users = new ArrayList<>();
+
+    @BeforeClass
+    public static void startBank() {
+        context = EmbeddedBank.start("--bank.search.max-page-size=" + MAX_PAGE_SIZE);
+        userService = context.getBean(UserService.class);
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        new TransactionTemplate(context.getBean(PlatformTransactionManager.class)).executeWithoutResult(status -> {
+            for (int i = 0; i < FULL_NAMES.length; i++) {
+                User user = EmbeddedBank.newUser("search" + (char) ('k' - i) + i);
+                user.setFullName(FULL_NAMES[i]);
+                users.add(userRepository.save(user));
+            }
+        });
+    }
+
+    @AfterClass
+    public static void stopBank() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testFullNamePagesAscendingAndDescending() {
+        Comparator<User> byFullName = Comparator.comparing(User::getFullName).thenComparing(User::getId);
+        assertEquals(expectedIds(byFullName), walk(null, "fullName", Sort.Direction.ASC, 3));
+        assertEquals(expectedIds(byFullName.reversed()), walk(null, "fullName", Sort.Direction.DESC, 3));
+    }
+
+    @Test
+    public void testUsernamePagesWithPrefixFilter() {
+        List<Long> expected = users.stream()
+                .filter(user -> user.getFullName().startsWith("Ivanov"))
+                .sorted(Comparator.comparing(User::getUsername))
+                .map(User::getId)
+                .toList();
+        assertEquals(expected, walk("Ivanov", "username", Sort.Direction.ASC, 2));
+    }
+
+    @Test
+    public void testPageSizeIsValidatedAndCapped() {
+        for (int size : new int[]{0, -1}) {
+            try {
+                userService.searchUsersAfter(null, null, null, null, "id", Sort.Direction.ASC, size, null);
+                fail("Expected page size " + size + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                assertEquals("Page size must be positive", e.getMessage());
+            }
+        }
+
+        UserSearchPage page = userService.searchUsersAfter(null, null, null, null, "id", Sort.Direction.ASC,
+                Integer.MAX_VALUE, null);
+        assertEquals(MAX_PAGE_SIZE, page.getItems().size());
+        assertNotNull(page.getNextCursor());
+        assertEquals(expectedIds(Comparator.comparing(User::getId)), walk(null, "id", Sort.Direction.ASC, 1000));
+    }
+
+    private static List<Long> walk(String fullName, String sortField, Sort.Direction direction, int size) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            UserSearchPage page = userService.searchUsersAfter(fullName, null, null, null, sortField, direction,
+                    size, cursor);
+            assertTrue(page.getItems().size() <= Math.min(size, MAX_PAGE_SIZE));
+            page.getItems().stream().map(UserResponse::getId).forEach(ids::add);
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+
+    private static List<Long> expectedIds(Comparator<User> order) {
+        return users.stream().sorted(order).map(User::getId).toList();
+    }
+}
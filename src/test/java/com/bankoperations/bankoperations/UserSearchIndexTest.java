@@ -0,0 +1,187 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import com.bankoperations.bankoperations.dto.UpdateEmailRequest;
+import com.bankoperations.bankoperations.dto.UserResponse;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.exception.InvalidUserException;
+import com.bankoperations.bankoperations.exception.UserNotFoundException;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.UserDetailsCache;
+import com.bankoperations.bankoperations.service.UserKeyFilters;
+import com.bankoperations.bankoperations.service.UserSearchIndex;
+import com.bankoperations.bankoperations.service.UserService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+public class UserSearchIndexTest {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserKeyFilters userKeyFilters;
+
+    @Mock
+    private UserDetailsCache userDetailsCache;
+
+    @InjectMocks
+    private UserSearchIndex userSearchIndex;
+
+    @InjectMocks
+    private UserService userService;
+
+    private final List<Object[]> rows = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        ReflectionTestUtils.setField(userSearchIndex, "enabled", true);
+        ReflectionTestUtils.setField(userSearchIndex, "loadPageSize", 2);
+        ReflectionTestUtils.setField(userService, "userSearchIndex", userSearchIndex);
+
+        row(1L, "Ivanov Ivan", 10);
+        row(2L, "Petrov Ivan", 20);
+        row(3L, "Ivanov Oleg", 30);
+        row(4L, "Ivanov Ivan", 40);
+        row(5L, "Ivanova Anna", 20);
+        row(6L, null, 50);
+        row(12L, "Ivanov Ivan", null);
+        when(userRepository.findSearchKeysAfter(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return rows.stream().filter(row -> (Long) row[0] > afterId).limit(pageable.getPageSize()).toList();
+        });
+        userSearchIndex.build();
+    }
+
+    @After
+    public void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    public void testPrefixAndDateIntersection() {
+        assertTrue(userSearchIndex.isReady());
+        assertEquals(List.of(1L, 4L, 12L, 3L, 5L), search("Ivanov", null, UserSearchIndex.Key.FULL_NAME, false));
+        assertEquals(List.of(4L, 3L), search("Ivanov", day(20), UserSearchIndex.Key.FULL_NAME, false));
+        assertEquals(List.of(3L, 4L), search("Ivanov", day(20), UserSearchIndex.Key.DATE_OF_BIRTH, false));
+        assertEquals(List.of(6L, 4L, 3L), search(null, day(20), UserSearchIndex.Key.DATE_OF_BIRTH, true));
+        assertEquals(List.of(), search("ivanov", null, UserSearchIndex.Key.FULL_NAME, false));
+    }
+
+    @Test
+    public void testPagesStopAfterLimit() {
+        assertEquals(List.of(1L, 4L), userSearchIndex.search("Ivanov", null, UserSearchIndex.Key.FULL_NAME, false, 0, 2));
+        assertEquals(List.of(12L, 3L), userSearchIndex.search("Ivanov", null, UserSearchIndex.Key.FULL_NAME, false, 2, 2));
+        assertEquals(List.of(5L), userSearchIndex.search("Ivanov", null, UserSearchIndex.Key.FULL_NAME, false, 4, 2));
+        assertEquals(List.of(), userSearchIndex.search("Ivanov", null, UserSearchIndex.Key.FULL_NAME, false, 6, 2));
+        assertEquals(List.of(5L, 3L), userSearchIndex.search("Ivanov", null, UserSearchIndex.Key.FULL_NAME, true, 0, 2));
+        assertEquals(List.of(2L, 5L), userSearchIndex.search(null, day(10), UserSearchIndex.Key.DATE_OF_BIRTH, false, 0, 2));
+    }
+
+    @Test
+    public void testPrefixInIdOrder() {
+        assertEquals(List.of(1L, 3L, 4L, 5L, 12L), search("Ivanov", null, UserSearchIndex.Key.ID, false));
+        assertEquals(List.of(12L, 5L, 4L, 3L, 1L), search("Ivanov", null, UserSearchIndex.Key.ID, true));
+        assertEquals(List.of(3L, 4L), search("Ivanov", day(20), UserSearchIndex.Key.ID, false));
+        assertEquals(List.of(1L, 3L), userSearchIndex.search("Ivanov", null, UserSearchIndex.Key.ID, false, 0, 2));
+        assertEquals(List.of(4L, 5L), userSearchIndex.search("Ivanov", null, UserSearchIndex.Key.ID, false, 2, 2));
+        assertEquals(List.of(12L), userSearchIndex.search("Ivanov", null, UserSearchIndex.Key.ID, false, 4, 2));
+        assertEquals(List.of(), userSearchIndex.search("Ivanov", null, UserSearchIndex.Key.ID, false, 6, 2));
+    }
+
+    @Test
+    public void testDefaultIdSortIsServedFromIndex() {
+        when(userRepository.findResponses(any(Specification.class), eq(Pageable.unpaged()))).thenReturn(List.of(
+                response(5L), response(4L)));
+
+        List<UserResponse> page = userService.searchUsers("Ivanov", null, null, null,
+                PageRequest.of(1, 2, Sort.by(Sort.Direction.ASC, "id")));
+
+        assertEquals(List.of(4L, 5L), page.stream().map(UserResponse::getId).toList());
+        verify(userRepository).findResponses(any(Specification.class), eq(Pageable.unpaged()));
+        verify(userRepository, never()).findResponses(any(Specification.class), eq(PageRequest.of(1, 2,
+                Sort.by(Sort.Direction.ASC, "id"))));
+    }
+
+    @Test
+    public void testUpdateMovesUserBetweenRanges() {
+        userSearchIndex.update(user(4L, "Petrova Olga", 5));
+        assertEquals(List.of(1L, 12L, 3L, 5L), search("Ivanov", null, UserSearchIndex.Key.FULL_NAME, false));
+        assertEquals(List.of(2L, 4L), search("Petrov", null, UserSearchIndex.Key.FULL_NAME, false));
+        assertEquals(List.of(4L, 1L), search(null, day(0), UserSearchIndex.Key.DATE_OF_BIRTH, false).subList(0, 2));
+        assertEquals(List.of(), search("Petrova", day(5), UserSearchIndex.Key.FULL_NAME, false));
+    }
+
+    @Test
+    public void testServiceUpdatesIndexOnlyOnCommit() throws UserNotFoundException, InvalidUserException {
+        User user = user(2L, "Petrov Ivan", 20);
+        when(userRepository.findById(2L)).thenReturn(Optional.of(user));
+        when(userRepository.save(user)).thenReturn(user);
+        user.setFullName("Sidorov Ivan");
+
+        TransactionSynchronizationManager.initSynchronization();
+        UpdateEmailRequest request = new UpdateEmailRequest();
+        request.setNewEmail("petrov@example.org");
+        userService.updateEmail(2L, request);
+        assertEquals(List.of(2L), search("Petrov", null, UserSearchIndex.Key.FULL_NAME, false));
+        verify(userKeyFilters, never()).add(user);
+
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCommit();
+        }
+        assertEquals(List.of(), search("Petrov", null, UserSearchIndex.Key.FULL_NAME, false));
+        assertEquals(List.of(2L), search("Sidorov", null, UserSearchIndex.Key.FULL_NAME, false));
+        verify(userKeyFilters).add(user);
+    }
+
+    private List<Long> search(String prefix, Date bornAfter, UserSearchIndex.Key key, boolean descending) {
+        return userSearchIndex.search(prefix, bornAfter, key, descending, 0, 100);
+    }
+
+    private static UserResponse response(Long id) {
+        User user = user(id, "Ivanov Ivan", 10);
+        return new UserResponse(id, user.getUsername(), user.getFullName(), user.getEmail(), user.getPhoneNumber(),
+                user.getDateOfBirth(), null);
+    }
+
+    private void row(Long id, String fullName, Integer day) {
+        rows.add(new Object[]{id, fullName, day == null ? null : day(day)});
+    }
+
+    private static User user(Long id, String fullName, int day) {
+        User user = EmbeddedBank.newUser("user" + id);
+        user.setId(id);
+        user.setFullName(fullName);
+        user.setDateOfBirth(day(day));
+        return user;
+    }
+
+    private static Date day(int day) {
+        return new Date(day * DAY);
+    }
+}
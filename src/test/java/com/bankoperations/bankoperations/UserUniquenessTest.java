@@ -0,0 +1,131 @@
+package com.bankoperations.bankoperations;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import com.bankoperations.bankoperations.dto.UpdateEmailRequest;
+import com.bankoperations.bankoperations.dto.UpdatePhoneRequest;
+import com.bankoperations.bankoperations.entity.Money;
+import com.bankoperations.bankoperations.entity.User;
+import com.bankoperations.bankoperations.exception.InvalidUserException;
+import com.bankoperations.bankoperations.exception.UserNotFoundException;
+import com.bankoperations.bankoperations.repository.UserRepository;
+import com.bankoperations.bankoperations.service.UserService;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Taken usernames, emails and phone numbers on user creation and contact updates, whether the key filters let the
+ * conflict query find them or only the unique indexes do.
+ */
+public class UserUniquenessTest {
+
+    private static ConfigurableApplicationContext context;
+
+    private static UserService userService;
+
+    private static UserRepository userRepository;
+
+    private static User seeded;
+
+    @BeforeClass
+    public static void startBank() {
+        context = EmbeddedBank.start();
+        userService = context.getBean(UserService.class);
+        userRepository = context.getBean(UserRepository.class);
+        // Seeded straight through the repository, so the key filters have never seen these values.
+        List<Long> ids = EmbeddedBank.seedUsers(context, 1, Money.of("100.00"));
+        seeded = userRepository.findById(ids.get(0)).orElseThrow();
+    }
+
+    @AfterClass
+    public static void stopBank() {
+        if (context != null) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testUniqueIndexViolationsKeepTheirMessages() {
+        long users = userRepository.count();
+
+        User sameUsername = EmbeddedBank.newUser("fresh1");
+        sameUsername.setUsername(seeded.getUsername());
+        assertRejected(sameUsername, "This username is already in use");
+
+        User sameEmail = EmbeddedBank.newUser("fresh2");
+        sameEmail.setEmail(seeded.getEmail());
+        assertRejected(sameEmail, "This email is already in use");
+
+        User samePhoneNumber = EmbeddedBank.newUser("fresh3");
+        samePhoneNumber.setPhoneNumber(seeded.getPhoneNumber());
+        assertRejected(samePhoneNumber, "This phone number is already in use");
+
+        assertEquals(users, userRepository.count());
+    }
+
+    @Test
+    public void testConflictQueryKeepsPrecedence() throws InvalidUserException {
+        User created = userService.createUser(EmbeddedBank.newUser("known"));
+
+        User taken = EmbeddedBank.newUser("other");
+        taken.setEmail(created.getEmail());
+        taken.setPhoneNumber(created.getPhoneNumber());
+        assertRejected(taken, "This email is already in use");
+    }
+
+    @Test
+    public void testContactUpdatesToTakenValuesAreRejected() throws InvalidUserException, UserNotFoundException {
+        User created = userService.createUser(EmbeddedBank.newUser("mover"));
+        User known = userService.createUser(EmbeddedBank.newUser("holder"));
+
+        // Known to the key filters, so the conflict query finds these.
+        assertEmailRejected(created.getId(), known.getEmail());
+        assertPhoneNumberRejected(created.getId(), known.getPhoneNumber());
+        // Only the unique indexes know the seeded values.
+        assertEmailRejected(created.getId(), seeded.getEmail());
+        assertPhoneNumberRejected(created.getId(), seeded.getPhoneNumber());
+
+        User reloaded = userRepository.findById(created.getId()).orElseThrow();
+        assertEquals(created.getEmail(), reloaded.getEmail());
+        assertEquals(created.getPhoneNumber(), reloaded.getPhoneNumber());
+
+        UpdateEmailRequest sameEmail = new UpdateEmailRequest();
+        sameEmail.setNewEmail(created.getEmail());
+        assertEquals(created.getEmail(), userService.updateEmail(created.getId(), sameEmail).getEmail());
+    }
+
+    private static void assertEmailRejected(Long userId, String email) throws UserNotFoundException {
+        UpdateEmailRequest request = new UpdateEmailRequest();
+        request.setNewEmail(email);
+        try {
+            userService.updateEmail(userId, request);
+            fail("Expected the email to be taken");
+        } catch (InvalidUserException e) {
+            assertEquals("This email is already in use", e.getMessage());
+        }
+    }
+
+    private static void assertPhoneNumberRejected(Long userId, String phoneNumber) throws UserNotFoundException {
+        UpdatePhoneRequest request = new UpdatePhoneRequest();
+        request.setNewPhoneNumber(phoneNumber);
+        try {
+            userService.updatePhoneNumber(userId, request);
+            fail("Expected the phone number to be taken");
+        } catch (InvalidUserException e) {
+            assertEquals("This phone number is already in use", e.getMessage());
+        }
+    }
+
+    private static void assertRejected(User user, String message) {
+        try {
+            userService.createUser(user);
+            fail("Expected " + message);
+        } catch (InvalidUserException e) {
+            assertEquals(message, e.getMessage());
+        }
+    }
+}